@@ -0,0 +1,69 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.broadside.email.batchrun_edit_config.model.TemplateView;
+
+/**
+ * The audit serialization JobQService does for every template request: the
+ * TemplateView to JSON, with the HTML body moved out into a payload reference.
+ * The writer is wired by hand with an empty stored-payload cache, so the
+ * large-string path hashes the content each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobQSerializationBenchmark {
+
+    @Param({ "10240", "102400", "2097152" })
+    public int size;
+
+    private JobQService jobQService;
+    private TemplateView view;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JobQWriter writer = new JobQWriter();
+        ReflectionTestUtils.setField(writer, "storedPayloads", new ConcurrentHashMap<String, LocalDate>());
+        jobQService = new JobQService();
+        ReflectionTestUtils.setField(jobQService, "jobQWriter", writer);
+        ReflectionTestUtils.setField(jobQService, "payloadMinLength", 1024);
+
+        view = new TemplateView();
+        view.setCampId("137783_FSN_BOUNCE_pdf");
+        view.setHtmlContent("<html><body>" + "x".repeat(Math.max(0, size - 27)) + "</body></html>");
+        view.setFilePath("/data/msgtmpl/137783_FSN_BOUNCE_pdf/137783_FSN.htm");
+        view.setExists(true);
+        view.setFileSize(size);
+        view.setLastModified("2024-06-11T10:15:30Z");
+        view.setContentHash("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08");
+        view.setValidHtml(true);
+    }
+
+    @Benchmark
+    public String toAuditJson() {
+        Map<String, String> payloads = new HashMap<>();
+        return jobQService.toAuditJson(view, payloads);
+    }
+}
@@ -0,0 +1,85 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.broadside.email.batchrun_edit_config.model.HtmlFinding;
+import com.broadside.email.batchrun_edit_config.utils.Hashing;
+import com.broadside.email.batchrun_edit_config.utils.HtmlStructureValidator;
+
+/**
+ * Per-template work done on every save and cache load: the content hash and
+ * the HTML structure check, both on a String and streamed over the bytes of
+ * an upload. The old envelope regex is kept here as a reference point.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateBenchmark {
+
+    // What TemplateService matched before the structure validator
+    private static final Pattern LEGACY_HTML_PATTERN = Pattern.compile("(?i)<html[^>]*>.*</html>", Pattern.DOTALL);
+
+    // 10 KB, 100 KB and the 2 MB upload limit
+    @Param({ "10240", "102400", "2097152" })
+    public int size;
+
+    private String html;
+    private byte[] htmlBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder sb = new StringBuilder(size + 256);
+        sb.append("<html lang=\"en\">\n<head><meta charset=\"utf-8\"><title>Statement</title></head>\n<body>\n");
+        int row = 0;
+        while (sb.length() < size - 32) {
+            sb.append("<tr><td class=\"c\">Row ").append(row++)
+                    .append("</td><td>Dear {{NAME}}, your holding in {{SCRIPT}} is {{QTY}} units.</td></tr>\n");
+        }
+        sb.append("</body>\n</html>\n");
+        html = sb.toString();
+        htmlBytes = html.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String sha256() {
+        return Hashing.sha256Hex(html);
+    }
+
+    @Benchmark
+    public boolean legacyPatternCheck() {
+        return LEGACY_HTML_PATTERN.matcher(html.trim()).matches();
+    }
+
+    @Benchmark
+    public List<HtmlFinding> structureCheck() {
+        return HtmlStructureValidator.validate(html);
+    }
+
+    @Benchmark
+    public List<HtmlFinding> structureCheckStreamed() {
+        HtmlStructureValidator validator = new HtmlStructureValidator();
+        for (int offset = 0; offset < htmlBytes.length; offset += 64 * 1024) {
+            validator.update(htmlBytes, offset, Math.min(64 * 1024, htmlBytes.length - offset));
+        }
+        return validator.finish();
+    }
+}
@@ -0,0 +1,106 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.broadside.email.batchrun_edit_config.model.ConfigView;
+
+/**
+ * ConfigParser and ConfigWriter on a config shaped like the production ones:
+ * a handful of headers, and either a few or many metadata columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigBenchmark {
+
+    @Param({ "5", "50" })
+    public int columns;
+
+    private final ConfigParser parser = new ConfigParser();
+    private final ConfigWriter writer = new ConfigWriter();
+
+    private ConfigView config;
+    private byte[] content;
+    private Path dir;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        config = new ConfigView();
+        config.setCampId("137783_FSN_BOUNCE_pdf");
+        config.setConstantCampId("137783_FSN_BOUNCE_pdf");
+        List<String> metadataColumns = new ArrayList<>();
+        for (int i = 0; i < columns; i++) {
+            metadataColumns.add(i == 0 ? "USERID" : "COLUMN_" + i);
+        }
+        config.setMetadataColumns(metadataColumns);
+        config.setTemplatePath("137783_FSN_BOUNCE_pdf/137783_FSN.htm");
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("From", "evoting@nsdl.com");
+        headers.put("Reply-To", "noreply@nsdl.com");
+        headers.put("Subject", "Your e-voting statement for the quarter");
+        headers.put("X-Campaign", "137783");
+        config.setMsgHeaders(headers);
+        config.setAttachmentDir("nsdl/ajay");
+        config.setNamespaceConstant("campid");
+
+        content = writer.render(config);
+        dir = Files.createTempDirectory("config-bench");
+        file = dir.resolve("137783_FSN_BOUNCE_pdf.conf");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public ConfigView parse() {
+        return parser.parse(content, "137783_FSN_BOUNCE_pdf");
+    }
+
+    @Benchmark
+    public byte[] render() {
+        return writer.render(config);
+    }
+
+    /**
+     * The full durable write: render, temp file, fsync, atomic rename and
+     * directory fsync. Dominated by the storage device, not the CPU.
+     */
+    @Benchmark
+    public Path write() throws IOException {
+        writer.write(file, config);
+        return file;
+    }
+}
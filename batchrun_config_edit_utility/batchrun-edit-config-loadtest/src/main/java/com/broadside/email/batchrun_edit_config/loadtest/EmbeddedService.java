@@ -0,0 +1,63 @@
+package com.broadside.email.batchrun_edit_config.loadtest;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.broadside.email.batchrun_edit_config.BatchrunEditConfigApplication;
+
+/**
+ * Starts the service in this JVM on a free port, serving a generated tree.
+ * Without a database URL, jobq auditing is switched off (jobs are still timed
+ * in the service's metrics) and nothing connects to Postgres; with one, every
+ * request is audited exactly as in production.
+ */
+public class EmbeddedService implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final URI baseUrl;
+
+    /**
+     * @param overrides further service properties, applied last
+     */
+    public EmbeddedService(Path root, String dbUrl, Map<String, String> overrides) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("config.storage.path", root.resolve(TreeGenerator.CONF_DIR).toString());
+        properties.put("templ.storage.path", root.resolve(TreeGenerator.TEMPLATE_DIR).toString());
+        properties.put("templ.blobstore.path", root.resolve("template-blobs").toString());
+        properties.put("jobq.spool.path", root.resolve("jobq-spool").toString());
+        // One line per request would dominate both the console and the measurements
+        properties.put("logging.level.com.broadside.email", "WARN");
+        if (dbUrl != null) {
+            properties.put("spring.datasource.url", dbUrl);
+        } else {
+            properties.put("spring.datasource.url", "jdbc:postgresql://127.0.0.1:1/none");
+            properties.put("jobq.audit.enabled", "false");
+            properties.put("jobq.schema.manage", "false");
+            properties.put("jobq.rollup.enabled", "false");
+        }
+        properties.putAll(overrides);
+
+        // As command-line arguments, so they win over the service's application.properties
+        List<String> args = new ArrayList<>();
+        properties.forEach((name, value) -> args.add("--" + name + "=" + value));
+        context = new SpringApplicationBuilder(BatchrunEditConfigApplication.class).run(args.toArray(new String[0]));
+        baseUrl = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    public URI getBaseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.broadside.email.batchrun_edit_config.loadtest;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.broadside.email.batchrun_edit_config.utils.LatencySketch;
+
+/**
+ * Latencies and error counts per operation. Each worker fills its own report
+ * (LatencySketch is not thread-safe); they are merged once the run is over.
+ */
+public class LatencyReport {
+
+    private final Map<String, LatencySketch> sketches = new TreeMap<>();
+    private final Map<String, Long> errors = new TreeMap<>();
+
+    public void record(String operation, double millis, boolean ok) {
+        sketches.computeIfAbsent(operation, name -> new LatencySketch()).add(millis);
+        if (!ok) {
+            errors.merge(operation, 1L, Long::sum);
+        }
+    }
+
+    public void merge(LatencyReport other) {
+        other.sketches.forEach((operation, sketch) ->
+                sketches.computeIfAbsent(operation, name -> new LatencySketch()).merge(sketch));
+        other.errors.forEach((operation, count) -> errors.merge(operation, count, Long::sum));
+    }
+
+    /**
+     * One row per operation plus a total: count, errors, throughput over
+     * seconds, and p50/p99/p999/max in milliseconds.
+     */
+    public List<Map<String, Object>> rows(double seconds) {
+        LatencySketch total = new LatencySketch();
+        long totalErrors = 0;
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map.Entry<String, LatencySketch> entry : sketches.entrySet()) {
+            long operationErrors = errors.getOrDefault(entry.getKey(), 0L);
+            rows.add(row(entry.getKey(), entry.getValue(), operationErrors, seconds));
+            total.merge(entry.getValue());
+            totalErrors += operationErrors;
+        }
+        rows.add(row("total", total, totalErrors, seconds));
+        return rows;
+    }
+
+    private static Map<String, Object> row(String operation, LatencySketch sketch, long errors, double seconds) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("operation", operation);
+        row.put("count", sketch.getCount());
+        row.put("errors", errors);
+        row.put("throughput", sketch.getCount() / seconds);
+        row.put("p50", sketch.quantile(0.5));
+        row.put("p99", sketch.quantile(0.99));
+        row.put("p999", sketch.quantile(0.999));
+        row.put("max", sketch.quantile(1.0));
+        return row;
+    }
+
+    public void print(PrintStream out, double seconds) {
+        out.printf("%-20s %9s %7s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map<String, Object> row : rows(seconds)) {
+            out.printf("%-20s %9d %7d %9.1f %9s %9s %9s %9s%n", row.get("operation"), row.get("count"),
+                    row.get("errors"), row.get("throughput"), millis(row.get("p50")), millis(row.get("p99")),
+                    millis(row.get("p999")), millis(row.get("max")));
+        }
+    }
+
+    private static String millis(Object value) {
+        return value == null ? "-" : String.format("%.2f", (Double) value);
+    }
+}
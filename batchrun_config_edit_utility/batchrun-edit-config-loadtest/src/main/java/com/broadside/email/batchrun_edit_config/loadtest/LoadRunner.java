@@ -0,0 +1,239 @@
+package com.broadside.email.batchrun_edit_config.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Closed-loop load against a running service: concurrency workers each send
+ * one request, wait for the full response, and send the next, choosing the
+ * operation by the mix weights and the campaign uniformly from the tree.
+ * Requests completing during the warmup are not recorded.
+ */
+public class LoadRunner {
+
+    public static final String DEFAULT_MIX = "config.get=40,template.get=25,template.download=10,backup.list=5,"
+            + "config.list=2,config.update=8,template.update=10";
+
+    // Distinct template revisions each worker cycles through on updates
+    private static final int UPDATE_REVISIONS = 8;
+    private static final int UPDATE_SIZE = 20 * 1024;
+    private static final int LIST_PAGE = 100;
+
+    public enum Operation {
+        CONFIG_GET("config.get"),
+        CONFIG_LIST("config.list"),
+        CONFIG_UPDATE("config.update"),
+        TEMPLATE_GET("template.get"),
+        TEMPLATE_DOWNLOAD("template.download"),
+        TEMPLATE_UPDATE("template.update"),
+        BACKUP_LIST("backup.list");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        static Operation fromLabel(String label) {
+            for (Operation operation : values()) {
+                if (operation.label.equals(label)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation " + label);
+        }
+    }
+
+    private final URI baseUrl;
+    private final List<String> campIds;
+    private final Map<Operation, Integer> mix;
+    private final int concurrency;
+    private final long seed;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public LoadRunner(URI baseUrl, List<String> campIds, Map<Operation, Integer> mix, int concurrency, long seed) {
+        this.baseUrl = baseUrl;
+        this.campIds = campIds;
+        this.mix = mix;
+        this.concurrency = concurrency;
+        this.seed = seed;
+    }
+
+    /**
+     * Parses "config.get=40,template.update=10"; operations not named get no
+     * traffic.
+     *
+     * @throws IllegalArgumentException if the mix is malformed or all zero
+     */
+    public static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] entry = part.trim().split("=");
+            if (entry.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            int weight = Integer.parseInt(entry[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for " + entry[0]);
+            }
+            mix.put(Operation.fromLabel(entry[0].trim()), weight);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("Mix has no traffic: " + spec);
+        }
+        return mix;
+    }
+
+    public LatencyReport run(Duration warmup, Duration duration) throws InterruptedException {
+        long recordFrom = System.nanoTime() + warmup.toNanos();
+        long stopAt = recordFrom + duration.toNanos();
+
+        List<Worker> workers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(i, recordFrom, stopAt);
+            Thread thread = new Thread(worker, "loadtest-" + i);
+            workers.add(worker);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencyReport report = new LatencyReport();
+        workers.forEach(worker -> report.merge(worker.report));
+        return report;
+    }
+
+    private class Worker implements Runnable {
+
+        private final int id;
+        private final long recordFrom;
+        private final long stopAt;
+        private final Random random;
+        private final LatencyReport report = new LatencyReport();
+        private final Operation[] operations;
+        private final int[] cumulativeWeights;
+        private final String[] revisions = new String[UPDATE_REVISIONS];
+        private int updates;
+
+        Worker(int id, long recordFrom, long stopAt) {
+            this.id = id;
+            this.recordFrom = recordFrom;
+            this.stopAt = stopAt;
+            this.random = new Random(seed + id);
+            operations = mix.keySet().toArray(new Operation[0]);
+            cumulativeWeights = new int[operations.length];
+            int sum = 0;
+            for (int i = 0; i < operations.length; i++) {
+                sum += mix.get(operations[i]);
+                cumulativeWeights[i] = sum;
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Operation operation = nextOperation();
+                String campId = campIds.get(random.nextInt(campIds.size()));
+                HttpRequest request = request(operation, campId);
+
+                long started = System.nanoTime();
+                boolean ok;
+                try {
+                    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    ok = status / 100 == 2 || status == 304;
+                } catch (IOException e) {
+                    ok = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long finished = System.nanoTime();
+
+                if (finished >= stopAt) {
+                    return;
+                }
+                if (finished >= recordFrom) {
+                    report.record(operation.label(), (finished - started) / 1_000_000.0, ok);
+                }
+            }
+        }
+
+        private Operation nextOperation() {
+            int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < operations.length; i++) {
+                if (pick < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            return operations[operations.length - 1];
+        }
+
+        private HttpRequest request(Operation operation, String campId) {
+            String campaign = "/campaign/" + campId;
+            return switch (operation) {
+                case CONFIG_GET -> get(campaign + "/config");
+                case CONFIG_LIST -> get("/campaign/configs?limit=" + LIST_PAGE + "&after="
+                        + URLEncoder.encode(campId, StandardCharsets.UTF_8));
+                case CONFIG_UPDATE -> put(campaign + "/config",
+                        json(Map.of("attachmentDir", "loadtest/" + campId + "/" + random.nextInt(1000))));
+                case TEMPLATE_GET -> get(campaign + "/template");
+                case TEMPLATE_DOWNLOAD -> get(campaign + "/template/download");
+                case TEMPLATE_UPDATE -> put(campaign + "/template", json(Map.of(
+                        "htmlContent", revision(),
+                        "description", "load test update " + updates++,
+                        "createBackup", true)));
+                case BACKUP_LIST -> get(campaign + "/template/backups?limit=20");
+            };
+        }
+
+        // Built once per worker and reused, so generating content does not load the client
+        private String revision() {
+            int index = random.nextInt(UPDATE_REVISIONS);
+            if (revisions[index] == null) {
+                revisions[index] = new String(
+                        TreeGenerator.template("worker-" + id, UPDATE_SIZE, index + 1), StandardCharsets.UTF_8);
+            }
+            return revisions[index];
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(baseUrl.resolve(path)).GET().build();
+        }
+
+        private HttpRequest put(String path, String body) {
+            return HttpRequest.newBuilder(baseUrl.resolve(path))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        private String json(Map<String, Object> body) {
+            return mapper.writeValueAsString(body);
+        }
+    }
+}
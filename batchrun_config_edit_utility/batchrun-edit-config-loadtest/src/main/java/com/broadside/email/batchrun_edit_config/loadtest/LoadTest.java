@@ -0,0 +1,172 @@
+package com.broadside.email.batchrun_edit_config.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Command-line entry point:
+ *
+ * <pre>
+ * generate --root=DIR [--campaigns=5000] [--backup-fraction=0.3] [--max-backups=5] [--seed=1]
+ * run      --root=DIR [--url=http://host:port] [--concurrency=16] [--warmup=10] [--duration=60]
+ *          [--mix=...] [--db-url=jdbc:postgresql://...] [--report=FILE] [--seed=1]
+ *          [--service.&lt;property&gt;=&lt;value&gt; ...]
+ * </pre>
+ *
+ * run starts the service in-process on the tree unless --url points at one
+ * already running (which must serve the same tree).
+ */
+public class LoadTest {
+
+    private static final String SERVICE_PREFIX = "service.";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        Map<String, String> options = parseOptions(args);
+        switch (args[0]) {
+            case "generate" -> generate(options);
+            case "run" -> run(options);
+            default -> usage();
+        }
+    }
+
+    private static void generate(Map<String, String> options) throws IOException {
+        Path root = Paths.get(required(options, "root"));
+        int campaigns = Integer.parseInt(options.getOrDefault("campaigns", "5000"));
+        TreeGenerator generator = new TreeGenerator(campaigns,
+                Double.parseDouble(options.getOrDefault("backup-fraction", "0.3")),
+                Integer.parseInt(options.getOrDefault("max-backups", "5")),
+                Long.parseLong(options.getOrDefault("seed", "1")));
+
+        long started = System.nanoTime();
+        long bytes = generator.generate(root);
+        System.out.printf("Generated %d campaigns (%.1f MB) under %s in %.1f s%n", campaigns,
+                bytes / (1024.0 * 1024.0), root, (System.nanoTime() - started) / 1e9);
+    }
+
+    private static void run(Map<String, String> options) throws Exception {
+        Path root = Paths.get(required(options, "root"));
+        List<String> campIds = campIds(root);
+        if (campIds.isEmpty()) {
+            throw new IllegalArgumentException("No campaigns under " + root + "; run generate first");
+        }
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        String mixSpec = options.getOrDefault("mix", LoadRunner.DEFAULT_MIX);
+        Map<LoadRunner.Operation, Integer> mix = LoadRunner.parseMix(mixSpec);
+
+        Map<String, String> overrides = new LinkedHashMap<>();
+        options.forEach((name, value) -> {
+            if (name.startsWith(SERVICE_PREFIX)) {
+                overrides.put(name.substring(SERVICE_PREFIX.length()), value);
+            }
+        });
+
+        EmbeddedService service = null;
+        URI baseUrl;
+        if (options.containsKey("url")) {
+            baseUrl = URI.create(options.get("url"));
+        } else {
+            service = new EmbeddedService(root, options.get("db-url"), overrides);
+            baseUrl = service.getBaseUrl();
+        }
+
+        try {
+            System.out.printf("%d campaigns, %d workers, %d s warmup + %d s against %s%nmix: %s%n", campIds.size(),
+                    concurrency, warmup.toSeconds(), duration.toSeconds(), baseUrl, mixSpec);
+            LoadRunner runner = new LoadRunner(baseUrl, campIds, mix, concurrency,
+                    Long.parseLong(options.getOrDefault("seed", "1")));
+            LatencyReport report = runner.run(warmup, duration);
+
+            double seconds = duration.toMillis() / 1000.0;
+            System.out.println();
+            report.print(System.out, seconds);
+
+            if (options.containsKey("report")) {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("target", baseUrl.toString());
+                json.put("audit", service == null ? "external" : options.containsKey("db-url") ? "postgres" : "off");
+                json.put("campaigns", campIds.size());
+                json.put("concurrency", concurrency);
+                json.put("warmupSeconds", warmup.toSeconds());
+                json.put("durationSeconds", duration.toSeconds());
+                json.put("mix", mixSpec);
+                json.put("operations", report.rows(seconds));
+                Files.writeString(Paths.get(options.get("report")),
+                        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(json));
+            }
+        } finally {
+            if (service != null) {
+                service.close();
+            }
+        }
+    }
+
+    private static List<String> campIds(Path root) throws IOException {
+        List<String> campIds = new ArrayList<>();
+        Path confDir = root.resolve(TreeGenerator.CONF_DIR);
+        if (!Files.isDirectory(confDir)) {
+            return campIds;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(confDir, "*.conf")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                campIds.add(name.substring(0, name.length() - ".conf".length()));
+            }
+        }
+        Collections.sort(campIds);
+        return campIds;
+    }
+
+    // "--name=value" after the command; a bare "--flag" means "true"
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String option = args[i].substring(2);
+            int eq = option.indexOf('=');
+            if (eq < 0) {
+                options.put(option, "true");
+            } else {
+                options.put(option.substring(0, eq), option.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("--" + name + " is required");
+        }
+        return value;
+    }
+
+    private static void usage() {
+        System.out.println("""
+                usage:
+                  generate --root=DIR [--campaigns=5000] [--backup-fraction=0.3] [--max-backups=5] [--seed=1]
+                  run --root=DIR [--url=http://host:port] [--concurrency=16] [--warmup=10] [--duration=60]
+                      [--mix=%s]
+                      [--db-url=jdbc:postgresql://...] [--report=FILE] [--seed=1] [--service.<property>=<value>...]
+                """.formatted(LoadRunner.DEFAULT_MIX));
+    }
+}
@@ -0,0 +1,166 @@
+package com.broadside.email.batchrun_edit_config.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.broadside.email.batchrun_edit_config.model.ConfigView;
+import com.broadside.email.batchrun_edit_config.utils.ConfigWriter;
+
+/**
+ * Writes a synthetic campaign tree shaped like production:
+ *
+ * <pre>
+ * root/conf/&lt;campId&gt;.conf                        ConfigWriter format
+ * root/msgtmpl/&lt;campId&gt;/&lt;name&gt;.html              the live template
+ * root/msgtmpl/&lt;campId&gt;/backups/&lt;name&gt;_&lt;ts&gt;.html   backups in the pre-blob-store layout
+ * </pre>
+ *
+ * Template sizes are skewed like real campaigns: most are tens of KB, some a
+ * few hundred, a few close to the 2 MB upload limit. Some templates keep a
+ * custom file name instead of &lt;campId&gt;.html. The backups are migrated into
+ * the blob store by the service the first time a campaign's backups are
+ * looked at, as they would be after an upgrade. The same seed always gives
+ * the same tree.
+ */
+public class TreeGenerator {
+
+    public static final String CONF_DIR = "conf";
+    public static final String TEMPLATE_DIR = "msgtmpl";
+
+    private static final int KB = 1024;
+    private static final int MAX_TEMPLATE_SIZE = 2 * 1024 * 1024 - 4 * KB;
+    private static final DateTimeFormatter BACKUP_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final String[] KINDS = { "NEWSLETTER", "FSN_BOUNCE_pdf", "WELCOME", "STATEMENT", "PROMO" };
+    private static final String[] CUSTOM_NAMES = { "welcome-email.html", "newsletter.html", "statement.html" };
+
+    private final ConfigWriter writer = new ConfigWriter();
+    private final Random random;
+
+    private final int campaigns;
+    private final double backupFraction;
+    private final int maxBackups;
+
+    public TreeGenerator(int campaigns, double backupFraction, int maxBackups, long seed) {
+        this.campaigns = campaigns;
+        this.backupFraction = backupFraction;
+        this.maxBackups = maxBackups;
+        this.random = new Random(seed);
+    }
+
+    public static String campId(int index) {
+        return String.format("%06d_LT_%s", index, KINDS[index % KINDS.length]);
+    }
+
+    /**
+     * Generates the tree under root and returns the number of bytes written.
+     */
+    public long generate(Path root) throws IOException {
+        Path confDir = Files.createDirectories(root.resolve(CONF_DIR));
+        Path templateDir = Files.createDirectories(root.resolve(TEMPLATE_DIR));
+
+        long bytes = 0;
+        for (int i = 0; i < campaigns; i++) {
+            String campId = campId(i);
+            // Written directly rather than with ConfigWriter.write: fsyncing thousands of files adds nothing here
+            byte[] config = writer.render(config(campId));
+            Files.write(confDir.resolve(campId + ".conf"), config);
+            bytes += config.length;
+
+            Path campaignDir = Files.createDirectories(templateDir.resolve(campId));
+            String fileName = random.nextInt(10) == 0
+                    ? CUSTOM_NAMES[random.nextInt(CUSTOM_NAMES.length)]
+                    : campId + ".html";
+            byte[] template = template(campId, templateSize(), 0);
+            Files.write(campaignDir.resolve(fileName), template);
+            bytes += template.length;
+
+            if (random.nextDouble() < backupFraction) {
+                bytes += writeBackups(campaignDir, campId, fileName, template.length);
+            }
+            if ((i + 1) % 1000 == 0) {
+                System.out.printf("  %d/%d campaigns%n", i + 1, campaigns);
+            }
+        }
+        return bytes;
+    }
+
+    private long writeBackups(Path campaignDir, String campId, String fileName, int size) throws IOException {
+        Path backupDir = Files.createDirectories(campaignDir.resolve("backups"));
+        String baseName = fileName.substring(0, fileName.length() - ".html".length());
+        LocalDateTime time = LocalDateTime.of(2025, 1, 1, 9, 0).plusMinutes(random.nextInt(60 * 24 * 200));
+
+        long bytes = 0;
+        int count = 1 + random.nextInt(maxBackups);
+        for (int revision = 1; revision <= count; revision++) {
+            byte[] content = template(campId, size, revision);
+            Files.write(backupDir.resolve(baseName + "_" + BACKUP_TIMESTAMP.format(time) + ".html"), content);
+            bytes += content.length;
+            time = time.plusHours(1 + random.nextInt(24 * 14));
+        }
+        return bytes;
+    }
+
+    private ConfigView config(String campId) {
+        ConfigView config = new ConfigView();
+        config.setCampId(campId);
+        config.setConstantCampId(campId);
+        List<String> columns = new ArrayList<>();
+        columns.add("USERID");
+        int columnCount = random.nextInt(4) == 0 ? 20 + random.nextInt(40) : 3 + random.nextInt(8);
+        for (int i = 1; i < columnCount; i++) {
+            columns.add("COLUMN_" + i);
+        }
+        config.setMetadataColumns(columns);
+        config.setTemplatePath(campId + "/" + campId + ".htm");
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("From", "notifications@example.com");
+        headers.put("Reply-To", "noreply@example.com");
+        headers.put("Subject", "Your " + campId.substring(10).toLowerCase() + " for this month");
+        headers.put("X-Campaign", campId.substring(0, 6));
+        config.setMsgHeaders(headers);
+        config.setAttachmentDir("loadtest/" + campId);
+        config.setNamespaceConstant("campid");
+        return config;
+    }
+
+    // 70% 5-30 KB, 25% 30-300 KB, 5% 300 KB up to the upload limit
+    private int templateSize() {
+        int bucket = random.nextInt(100);
+        if (bucket < 70) {
+            return 5 * KB + random.nextInt(25 * KB);
+        }
+        if (bucket < 95) {
+            return 30 * KB + random.nextInt(270 * KB);
+        }
+        return 300 * KB + random.nextInt(MAX_TEMPLATE_SIZE - 300 * KB);
+    }
+
+    /**
+     * Well-formed HTML of about size bytes: a table of merge-field rows, like a
+     * statement or newsletter. Different revisions differ in content.
+     */
+    public static byte[] template(String campId, int size, int revision) {
+        StringBuilder html = new StringBuilder(size + 512);
+        html.append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>")
+                .append(campId).append(" r").append(revision).append("</title>\n</head>\n<body>\n<table>\n");
+        int row = 0;
+        while (html.length() < size) {
+            html.append("<tr><td class=\"label\">Item ").append(row)
+                    .append("</td><td>{{COLUMN_").append(row % 8).append("}}</td><td><a href=\"https://example.com/")
+                    .append(campId).append("/").append(revision).append("/").append(row)
+                    .append("\">details</a></td></tr>\n");
+            row++;
+        }
+        html.append("</table>\n</body>\n</html>\n");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
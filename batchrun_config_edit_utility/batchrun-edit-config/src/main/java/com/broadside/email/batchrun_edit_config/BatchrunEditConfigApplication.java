@@ -2,8 +2,10 @@ package com.broadside.email.batchrun_edit_config;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class BatchrunEditConfigApplication {
 
 	public static void main(String[] args) {
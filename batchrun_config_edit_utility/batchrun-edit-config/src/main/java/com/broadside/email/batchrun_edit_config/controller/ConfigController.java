@@ -1,38 +1,89 @@
 package com.broadside.email.batchrun_edit_config.controller;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.broadside.email.batchrun_edit_config.model.BulkConfigUpdateRequest;
+import com.broadside.email.batchrun_edit_config.model.BulkConfigUpdateResult;
+import com.broadside.email.batchrun_edit_config.model.ConfigListQuery;
 import com.broadside.email.batchrun_edit_config.model.ConfigUpdateRequest;
 import com.broadside.email.batchrun_edit_config.model.ConfigView;
+import com.broadside.email.batchrun_edit_config.service.CampaignIndexService;
 import com.broadside.email.batchrun_edit_config.service.ConfigService;
 import com.broadside.email.batchrun_edit_config.service.JobQService;
+import com.broadside.email.batchrun_edit_config.service.PreconditionFailedException;
+import com.broadside.email.batchrun_edit_config.utils.ETags;
+
+import tools.jackson.databind.ObjectMapper;
 
 @RestController
 @RequestMapping("/campaign")
 public class ConfigController {
 
+    private static final int MAX_LIST_LIMIT = 10000;
+    private static final String NEXT_AFTER_HEADER = "X-Next-After";
+
     @Autowired
     private ConfigService configService;
 
+    @Value("${config.bulk.max-items:10000}")
+    private int bulkMaxItems;
+
     @Autowired
     private JobQService jobQService;
 
+    @Autowired
+    private CampaignIndexService campaignIndexService;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Returns the parsed config. Carries a strong ETag and Last-Modified from the
+     * .conf file and answers 304 when the client's copy is current.
+     */
     @GetMapping("/{campId}/config")
-    public ResponseEntity<?> getConfig(@PathVariable String campId) {
-        int jobId = jobQService.start("CONFIG", "GET", campId);
+    public ResponseEntity<?> getConfig(@PathVariable String campId, WebRequest webRequest) {
+        String jobId = jobQService.start("CONFIG", "GET", campId, campId);
 
         try {
             ConfigView view = configService.getConfig(campId);
+            String etag = ETags.strong(view.getContentHash());
+            long lastModified = ETags.lastModifiedMillis(view.getLastModified());
+            if (webRequest.checkNotModified(etag, lastModified)) {
+                jobQService.end(jobId, "Not modified", "NOT_MODIFIED");
+                return null;
+            }
             jobQService.end(jobId, view, "SUCCESS");
-            return ResponseEntity.ok(view);
+            return ResponseEntity.ok().eTag(etag).lastModified(lastModified).body(view);
         } catch (Exception e) {
             jobQService.end(jobId, e.getMessage(), "FAILED");
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -40,17 +91,27 @@ public class ConfigController {
         }
     }
 
+    /**
+     * Updates the config. With If-Match, answers 412 if the stored config no
+     * longer has that ETag.
+     */
     @PutMapping("/{campId}/config")
     public ResponseEntity<?> updateConfig(
             @PathVariable String campId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody ConfigUpdateRequest request) {
 
-        int jobId = jobQService.start("CONFIG", "UPDATE", request);
+        String jobId = jobQService.start("CONFIG", "UPDATE", campId, request);
 
         try {
-            ConfigView updated = configService.updateConfig(campId, request);
+            ConfigView updated = configService.updateConfig(campId, request, ifMatch);
             jobQService.end(jobId, updated, "SUCCESS");
-            return ResponseEntity.ok(updated);
+            return ResponseEntity.ok().eTag(ETags.strong(updated.getContentHash())).body(updated);
+        } catch (PreconditionFailedException e) {
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .eTag(ETags.strong(e.getCurrentHash()))
+                    .body("Error: " + e.getMessage());
         } catch (Exception e) {
             jobQService.end(jobId, e.getMessage(), "FAILED");
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -58,4 +119,262 @@ public class ConfigController {
         }
     }
 
+    /**
+     * Lists parsed configs, one page at a time in campId order. Files are
+     * parsed in parallel and written out as each finishes, so entries within
+     * a page arrive in no particular order. The body is a JSON array, or NDJSON
+     * with format=ndjson or Accept: application/x-ndjson. When more pages
+     * remain, X-Next-After holds the value to pass as "after".
+     */
+    @GetMapping("/configs")
+    public ResponseEntity<StreamingResponseBody> listConfigs(
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant modifiedSince,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "1000") int limit,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+        if (limit < 1 || limit > MAX_LIST_LIMIT) {
+            return error(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIST_LIMIT);
+        }
+
+        ConfigListQuery query = new ConfigListQuery();
+        query.setPrefix(prefix);
+        query.setModifiedSince(modifiedSince);
+        query.setAfter(after);
+        query.setLimit(limit);
+
+        String jobId = jobQService.start("CONFIG", "LIST", null, query);
+
+        ConfigService.ConfigPage page;
+        try {
+            page = configService.listConfigs(query);
+        } catch (Exception e) {
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+
+        boolean ndjson = "ndjson".equalsIgnoreCase(format)
+                || (accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE));
+
+        StreamingResponseBody body = out -> {
+            OutputStream buffered = new BufferedOutputStream(out, 16 * 1024);
+            int[] count = { 0 };
+            boolean completed = false;
+            String error = null;
+            try {
+                if (!ndjson) {
+                    buffered.write('[');
+                }
+                configService.forEachConfig(page.campIds(), view -> {
+                    try {
+                        if (!ndjson && count[0] > 0) {
+                            buffered.write(',');
+                        }
+                        buffered.write(mapper.writeValueAsBytes(view));
+                        if (ndjson) {
+                            buffered.write('\n');
+                        }
+                        count[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (!ndjson) {
+                    buffered.write(']');
+                }
+                buffered.flush();
+                completed = true;
+            } catch (UncheckedIOException e) {
+                error = e.getMessage();
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = "Interrupted";
+                throw new IOException("Config listing interrupted", e);
+            } catch (IOException | RuntimeException e) {
+                error = e.getMessage();
+                throw e;
+            } finally {
+                // Exactly once, however the body ends
+                if (completed) {
+                    jobQService.end(jobId, Map.of("count", count[0]), "SUCCESS");
+                } else {
+                    jobQService.end(jobId, error != null ? error : "Listing failed", "FAILED");
+                }
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON);
+        if (page.nextAfter() != null) {
+            response.header(NEXT_AFTER_HEADER, page.nextAfter());
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Applies one ConfigUpdateRequest overlay to many campaigns: the listed
+     * campIds, or those matching an index field/value and/or a campId prefix.
+     * Writes run in parallel, each atomic for its own campaign. One NDJSON
+     * line per campaign is streamed back as it completes, and the whole run
+     * is recorded as a single jobq entry with the counts per status. When the
+     * client goes away the request is cancelled: campaigns not yet started are
+     * left alone, those being written finish, and the jobq entry also lists
+     * every campaign that was updated, since the client never saw them all.
+     */
+    @PostMapping("/configs/bulk-update")
+    public ResponseEntity<StreamingResponseBody> bulkUpdateConfigs(@RequestBody BulkConfigUpdateRequest request) {
+        if (request.getUpdate() == null) {
+            return error(HttpStatus.BAD_REQUEST, "update is required");
+        }
+        List<String> campIds;
+        try {
+            campIds = resolveTargets(request);
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        } catch (IOException e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+        if (campIds.size() > bulkMaxItems) {
+            return error(HttpStatus.BAD_REQUEST,
+                    campIds.size() + " campaigns selected, at most " + bulkMaxItems + " allowed");
+        }
+
+        String jobId = jobQService.start("CONFIG", "BULK_UPDATE", null, request);
+
+        StreamingResponseBody body = out -> {
+            OutputStream buffered = new BufferedOutputStream(out, 16 * 1024);
+            Map<String, Integer> counts = new TreeMap<>();
+            List<String> updated = new ArrayList<>();
+            IOException[] writeFailure = { null };
+            String status = "FAILED";
+            String error = null;
+            try {
+                configService.bulkUpdate(campIds, request.getUpdate(), request.getIfMatch(), result -> {
+                    counts.merge(result.getStatus(), 1, Integer::sum);
+                    if (BulkConfigUpdateResult.UPDATED.equals(result.getStatus())) {
+                        updated.add(result.getCampId());
+                    }
+                    if (writeFailure[0] != null) {
+                        return;
+                    }
+                    try {
+                        buffered.write(mapper.writeValueAsBytes(result));
+                        buffered.write('\n');
+                        // Results are sparse compared to listings; let clients follow progress
+                        buffered.flush();
+                    } catch (IOException | RuntimeException e) {
+                        // Client went away; keep counting until the request is cancelled, so the
+                        // jobq entry still covers every campaign written
+                        writeFailure[0] = e instanceof IOException io ? io : new IOException(e);
+                    }
+                });
+                boolean allUpdated = updated.size() == campIds.size();
+                status = allUpdated ? "SUCCESS" : "PARTIAL";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = "Interrupted";
+                throw new IOException("Bulk update interrupted", e);
+            } catch (RuntimeException e) {
+                error = e.getMessage();
+                throw e;
+            } finally {
+                Map<String, Object> summary = bulkSummary(campIds, counts);
+                if (error != null) {
+                    summary.put("error", error);
+                }
+                if (writeFailure[0] != null) {
+                    summary.put("responseError", writeFailure[0].getMessage());
+                }
+                if (error != null || writeFailure[0] != null) {
+                    summary.put("updated", updated);
+                }
+                jobQService.end(jobId, summary, status);
+            }
+            if (writeFailure[0] != null) {
+                throw writeFailure[0];
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private List<String> resolveTargets(BulkConfigUpdateRequest request) throws IOException {
+        if (request.getCampIds() != null && !request.getCampIds().isEmpty()) {
+            return new ArrayList<>(new LinkedHashSet<>(request.getCampIds()));
+        }
+        if (request.getField() != null) {
+            if (request.getValue() == null) {
+                throw new IllegalArgumentException("value is required with field");
+            }
+            if (!campaignIndexService.isReady()) {
+                throw new IllegalStateException("campaign index is still being built");
+            }
+            List<String> campIds = new ArrayList<>(campaignIndexService.find(request.getField(), request.getValue()));
+            if (request.getPrefix() != null) {
+                campIds.removeIf(campId -> !campId.startsWith(request.getPrefix()));
+            }
+            return campIds;
+        }
+        if (request.getPrefix() != null) {
+            ConfigListQuery query = new ConfigListQuery();
+            query.setPrefix(request.getPrefix());
+            query.setLimit(Integer.MAX_VALUE);
+            return configService.listConfigs(query).campIds();
+        }
+        throw new IllegalArgumentException("campIds, field/value or prefix is required");
+    }
+
+    private static ResponseEntity<StreamingResponseBody> error(HttpStatus status, String message) {
+        byte[] error = ("Error: " + message).getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(status)
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(out -> out.write(error));
+    }
+
+    private static Map<String, Object> bulkSummary(List<String> campIds, Map<String, Integer> counts) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requested", campIds.size());
+        summary.put("results", counts);
+        return summary;
+    }
+
+    /**
+     * Looks up campaigns by config attribute in the in-memory index, e.g.
+     * field=msgHeader.From&value=news@example.com or field=metadataColumn&value=PAN.
+     * Answers 503 until the index has been built.
+     */
+    @GetMapping("/index")
+    public ResponseEntity<?> findCampaigns(@RequestParam String field, @RequestParam String value) {
+        if (!campaignIndexService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Error: campaign index is still being built");
+        }
+        try {
+            List<String> campIds = campaignIndexService.find(field, value);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("field", field);
+            result.put("value", value);
+            result.put("count", campIds.size());
+            result.put("campIds", campIds);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/index/stats")
+    public ResponseEntity<Map<String, Object>> getIndexStats() {
+        return ResponseEntity.ok(campaignIndexService.stats());
+    }
+
+    @GetMapping("/config-cache/stats")
+    public ResponseEntity<Map<String, Object>> getConfigCacheStats() {
+        return ResponseEntity.ok(configService.cacheStats());
+    }
+
 }
@@ -0,0 +1,191 @@
+package com.broadside.email.batchrun_edit_config.controller;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.broadside.email.batchrun_edit_config.dao.JobQRollupDao;
+import com.broadside.email.batchrun_edit_config.model.JobQQuery;
+import com.broadside.email.batchrun_edit_config.model.JobQRecord;
+import com.broadside.email.batchrun_edit_config.model.LatencyRollup;
+import com.broadside.email.batchrun_edit_config.service.JobQRollupService;
+import com.broadside.email.batchrun_edit_config.service.JobQService;
+
+import tools.jackson.databind.ObjectMapper;
+
+@RestController
+@RequestMapping("/jobq")
+public class JobQController {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQController.class);
+
+    private static final int MAX_LIMIT = 10000;
+    private static final Pattern PAYLOAD_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    @Autowired
+    private JobQService jobQService;
+
+    @Autowired
+    private JobQRollupService rollupService;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Audit history, newest first, streamed as NDJSON (one jobq row per line).
+     * Pass the last row's "cursor" as "after" to fetch the next page.
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> history(
+            @RequestParam(required = false) String jobtype,
+            @RequestParam(required = false) String mode,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String campId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "1000") int limit,
+            @RequestParam(defaultValue = "true") boolean includeBodies) {
+
+        if (limit < 1 || limit > MAX_LIMIT) {
+            return badRequest("limit must be between 1 and " + MAX_LIMIT);
+        }
+
+        JobQQuery query = new JobQQuery();
+        query.setJobType(jobtype);
+        query.setMode(mode);
+        query.setStatus(status);
+        query.setCampId(campId);
+        query.setFrom(from);
+        query.setTo(to);
+        query.setLimit(limit);
+        query.setIncludeBodies(includeBodies);
+
+        if (after != null && !after.isBlank()) {
+            try {
+                JobQService.applyCursor(query, after);
+            } catch (IllegalArgumentException e) {
+                return badRequest(e.getMessage());
+            }
+        }
+
+        // Read the whole page first: the connection goes back to the pool before a slow client reads it
+        List<JobQRecord> page;
+        try {
+            page = jobQService.history(query);
+        } catch (Exception e) {
+            logger.error("jobq history query failed: {}", e.getMessage());
+            byte[] error = mapper.writeValueAsBytes(createErrorResponse("Database error", e.getMessage()));
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> out.write(error));
+        }
+
+        StreamingResponseBody body = out -> {
+            OutputStream buffered = new BufferedOutputStream(out, 16 * 1024);
+            for (JobQRecord record : page) {
+                buffered.write(mapper.writeValueAsBytes(record));
+                buffered.write('\n');
+            }
+            buffered.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Content of a payload referenced from a jobq row as {"$payload": hash}.
+     */
+    @GetMapping("/payloads/{hash}")
+    public ResponseEntity<?> payload(@PathVariable String hash) {
+        if (!PAYLOAD_HASH.matcher(hash).matches()) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Invalid request", "Invalid payload hash"));
+        }
+        try {
+            byte[] content = jobQService.payload(hash);
+            if (content == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(createErrorResponse("Not found", "No payload with hash " + hash));
+            }
+            return ResponseEntity.ok()
+                    .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                    .body(content);
+        } catch (Exception e) {
+            logger.error("Error reading jobq payload {}: {}", hash, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Database error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Pre-aggregated latency per MINUTE or HOUR bucket: count, error rate and
+     * p50/p95/p99 in milliseconds. Defaults to the last hour of minutes or the
+     * last day of hours. The error rate is the FAILED share; PARTIAL bulk
+     * updates show up under their own status with byStatus.
+     */
+    @GetMapping(value = "/latency", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> latency(
+            @RequestParam(defaultValue = "MINUTE") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String jobtype,
+            @RequestParam(required = false) String mode,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "true") boolean byStatus) {
+
+        String unit = granularity.toUpperCase();
+        if (!JobQRollupDao.MINUTE.equals(unit) && !JobQRollupDao.HOUR.equals(unit)) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Invalid request", "granularity must be MINUTE or HOUR"));
+        }
+
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from
+                : end.minus(JobQRollupDao.MINUTE.equals(unit) ? Duration.ofHours(1) : Duration.ofDays(1));
+
+        try {
+            List<LatencyRollup> rollups = rollupService.query(unit, start, end, jobtype, mode, status, byStatus);
+            return ResponseEntity.ok(rollups);
+        } catch (Exception e) {
+            logger.error("Error reading latency rollups: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Database error", e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> badRequest(String message) {
+        byte[] error = mapper.writeValueAsBytes(createErrorResponse("Invalid request", message));
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> out.write(error));
+    }
+
+    private Map<String, Object> createErrorResponse(String error, String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", error);
+        errorResponse.put("message", message);
+        errorResponse.put("timestamp", System.currentTimeMillis());
+        return errorResponse;
+    }
+}
@@ -1,17 +1,25 @@
 package com.broadside.email.batchrun_edit_config.controller;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -20,15 +28,25 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.broadside.email.batchrun_edit_config.model.HtmlFinding;
+import com.broadside.email.batchrun_edit_config.model.TemplateBackup;
 import com.broadside.email.batchrun_edit_config.model.TemplateUpdateRequest;
 import com.broadside.email.batchrun_edit_config.model.TemplateView;
 import com.broadside.email.batchrun_edit_config.service.JobQService;
+import com.broadside.email.batchrun_edit_config.service.PreconditionFailedException;
 import com.broadside.email.batchrun_edit_config.service.TemplateService;
+import com.broadside.email.batchrun_edit_config.utils.ETags;
+import com.broadside.email.batchrun_edit_config.utils.StorageMetrics;
+
+import tools.jackson.databind.ObjectMapper;
 
 @RestController
 @RequestMapping("/campaign")
@@ -36,25 +54,53 @@ public class TemplateController {
 
     private static final Logger logger = LoggerFactory.getLogger(TemplateController.class);
 
+    private static final int MAX_BACKUP_PAGE = 500;
+
     @Autowired
     private TemplateService templateService;
 
     @Autowired
     private JobQService jobQService;
 
+    @Autowired
+    private StorageMetrics storageMetrics;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // JSON property names of TemplateView, which fields= may select from
+    private final Set<String> templateFields = Set.copyOf(mapper.convertValue(new TemplateView(), Map.class).keySet());
+
     /**
-     * Download/Get template for a campaign
+     * Download/Get template for a campaign. Answers 304 when If-None-Match or
+     * If-Modified-Since show the client already has the current content.
+     *
+     * fields=exists,fileSize,contentHash,... returns only those properties.
+     * Unless htmlContent is among them, the template is not read (its cached
+     * or sidecar metadata is used), and the job is audited as mode META.
      */
     @GetMapping(value = "/{campId}/template", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getTemplate(@PathVariable String campId) {
+    public ResponseEntity<?> getTemplate(@PathVariable String campId,
+            @RequestParam(required = false) String fields, WebRequest webRequest) {
         logger.info("GET template request for campaign: {}", campId);
-        int jobId = jobQService.start("TEMPLATE", "GET", campId);
+        List<String> projection = projection(fields);
+        boolean withContent = projection == null || projection.contains("htmlContent");
+        String jobId = jobQService.start("TEMPLATE", withContent ? "GET" : "META", campId,
+                fields != null ? campId + " - fields=" + fields : campId);
 
         try {
-            TemplateView view = templateService.getTemplate(campId);
-            jobQService.end(jobId, view, "SUCCESS");
+            if (projection != null) {
+                for (String field : projection) {
+                    if (!templateFields.contains(field)) {
+                        throw new IllegalArgumentException("Unknown field '" + field + "'; known fields: "
+                                + String.join(",", new TreeSet<>(templateFields)));
+                    }
+                }
+            }
+            TemplateView view = withContent ? templateService.getTemplate(campId)
+                    : templateService.getTemplateMeta(campId);
 
             if (!view.isExists()) {
+                jobQService.end(jobId, view, "SUCCESS");
                 Map<String, Object> response = new HashMap<>();
                 response.put("message", "Template not found for campaign: " + campId);
                 response.put("campId", campId);
@@ -62,7 +108,16 @@ public class TemplateController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
             }
 
-            return ResponseEntity.ok(view);
+            String etag = ETags.strong(view.getContentHash());
+            long lastModified = ETags.lastModifiedMillis(view.getLastModified());
+            if (webRequest.checkNotModified(etag, lastModified)) {
+                jobQService.end(jobId, "Not modified", "NOT_MODIFIED");
+                return null;
+            }
+
+            Object body = projection != null ? project(view, projection) : view;
+            jobQService.end(jobId, body, "SUCCESS");
+            return ResponseEntity.ok().eTag(etag).lastModified(lastModified).body(body);
         } catch (IllegalArgumentException e) {
             logger.warn("Invalid request for campaign {}: {}", campId, e.getMessage());
             jobQService.end(jobId, e.getMessage(), "FAILED");
@@ -81,22 +136,49 @@ public class TemplateController {
         }
     }
 
+    // The trimmed, non-empty names in fields=, or null when it names none
+    private static List<String> projection(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        List<String> names = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .toList();
+        return names.isEmpty() ? null : names;
+    }
+
+    private Map<String, Object> project(TemplateView view, List<String> fields) {
+        Map<?, ?> all = mapper.convertValue(view, Map.class);
+        Map<String, Object> projected = new LinkedHashMap<>();
+        for (String field : fields) {
+            projected.put(field, all.get(field));
+        }
+        return projected;
+    }
+
     /**
-     * Upload/Update template for a campaign
+     * Upload/Update template for a campaign. With If-Match, answers 412 if the
+     * stored template no longer has that ETag.
      */
     @PutMapping(value = "/{campId}/template", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> updateTemplate(
             @PathVariable String campId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody TemplateUpdateRequest request) {
 
         logger.info("PUT template request for campaign: {}", campId);
-        int jobId = jobQService.start("TEMPLATE", "UPDATE", request);
+        String jobId = jobQService.start("TEMPLATE", "UPDATE", campId, request);
 
         try {
-            TemplateView updated = templateService.updateTemplate(campId, request);
+            TemplateView updated = templateService.updateTemplate(campId, request, ifMatch);
             jobQService.end(jobId, updated, "SUCCESS");
             logger.info("Successfully updated template for campaign: {}", campId);
-            return ResponseEntity.ok(updated);
+            return ResponseEntity.ok().eTag(ETags.strong(updated.getContentHash())).body(updated);
+        } catch (PreconditionFailedException e) {
+            logger.warn("Rejected stale update for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return preconditionFailed(e);
         } catch (IllegalArgumentException e) {
             logger.warn("Invalid request for campaign {}: {}", campId, e.getMessage());
             jobQService.end(jobId, e.getMessage(), "FAILED");
@@ -133,6 +215,11 @@ public class TemplateController {
             response.put("campId", campId);
             response.put("valid", isValid);
             response.put("message", isValid ? "Template is valid" : "Template validation failed");
+            if (isValid) {
+                List<HtmlFinding> findings = templateService.checkHtmlStructure(request.getHtmlContent());
+                response.put("structureValid", findings.isEmpty());
+                response.put("findings", findings);
+            }
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -145,41 +232,70 @@ public class TemplateController {
     // ==================== FILE DOWNLOAD & UPLOAD ENDPOINTS ====================
 
     /**
-     * Download HTML template file
+     * Download HTML template file. Streams straight from disk with constant heap
+     * use, supports If-None-Match/If-Modified-Since like the JSON endpoint, and
+     * honours a single Range (subject to If-Range) with 206. Multiple ranges
+     * get the whole file.
      */
     @GetMapping(value = "/{campId}/template/download", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public ResponseEntity<Resource> downloadTemplate(@PathVariable String campId) {
+    public ResponseEntity<StreamingResponseBody> downloadTemplate(
+            @PathVariable String campId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            WebRequest webRequest) {
         logger.info("Download template file request for campaign: {}", campId);
-        int jobId = jobQService.start("TEMPLATE", "DOWNLOAD", campId);
+        String jobId = jobQService.start("TEMPLATE", "DOWNLOAD", campId, campId);
 
+        FileChannel channel = null;
         try {
-
-            Path templateFile = templateService.getTemplateFilePath(campId);
-
-            if (!Files.exists(templateFile)) {
+            TemplateService.OpenTemplate template = templateService.openTemplate(campId);
+            if (template == null) {
                 jobQService.end(jobId, "Template file not found", "FAILED");
                 return ResponseEntity.notFound().build();
             }
-
-            byte[] fileContent = Files.readAllBytes(templateFile);
-            ByteArrayResource resource = new ByteArrayResource(fileContent);
+            channel = template.channel();
+            TemplateView view = template.view();
+
+            String etag = ETags.strong(view.getContentHash());
+            long lastModified = ETags.lastModifiedMillis(view.getLastModified());
+            if (webRequest.checkNotModified(etag, lastModified)) {
+                jobQService.end(jobId, "Not modified", "NOT_MODIFIED");
+                return null;
+            }
 
             // Use the actual filename from the template file
-            String actualFileName = templateFile.getFileName().toString();
+            String actualFileName = Path.of(view.getFilePath()).getFileName().toString();
+            long length = view.getFileSize();
 
             HttpHeaders headers = new HttpHeaders();
             headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + actualFileName + "\"");
-            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_HTML_VALUE);
-            headers.add(HttpHeaders.CONTENT_LENGTH, String.valueOf(fileContent.length));
-
-            jobQService.end(jobId, "File downloaded successfully", "SUCCESS");
-            logger.info("Successfully downloaded template file for campaign: {}", campId);
+            headers.add(HttpHeaders.ACCEPT_RANGES, "bytes");
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+
+            HttpRange requested = singleRange(range, ifRange, etag, lastModified);
+            long start = 0;
+            long count = length;
+            HttpStatus status = HttpStatus.OK;
+            if (requested != null) {
+                try {
+                    start = requested.getRangeStart(length);
+                    count = requested.getRangeEnd(length) - start + 1;
+                } catch (IllegalArgumentException e) {
+                    count = 0;
+                }
+                if (start >= length || count <= 0) {
+                    jobQService.end(jobId, "Range not satisfiable: " + range, "FAILED");
+                    headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+                }
+                status = HttpStatus.PARTIAL_CONTENT;
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + count - 1) + "/" + length);
+            }
+            headers.setContentLength(count);
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(fileContent.length)
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(resource);
+            StreamingResponseBody body = transfer(jobId, campId, channel, start, count);
+            channel = null;
+            return ResponseEntity.status(status).headers(headers).body(body);
 
         } catch (IllegalArgumentException e) {
             logger.warn("Invalid download request for campaign {}: {}", campId, e.getMessage());
@@ -193,6 +309,75 @@ public class TemplateController {
             logger.error("Unexpected error downloading template for campaign {}: {}", campId, e.getMessage(), e);
             jobQService.end(jobId, e.getMessage(), "FAILED");
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * Returns the one range to serve, or null for the whole file: when there is
+     * no Range header, If-Range no longer matches, the header is malformed, or
+     * it asks for several ranges.
+     */
+    private HttpRange singleRange(String range, String ifRange, String etag, long lastModified) {
+        if (range == null || !ETags.ifRangeMatches(ifRange, etag, lastModified)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Copies count bytes from position start with FileChannel.transferTo, then
+     * closes the channel and ends the job: SUCCESS only once every byte has been
+     * handed to the response. The target wraps the servlet stream, so the copy
+     * goes through a small fixed buffer rather than sendfile.
+     */
+    private StreamingResponseBody transfer(String jobId, String campId, FileChannel channel, long start,
+            long count) {
+        return out -> {
+            boolean completed = false;
+            String error = null;
+            try (FileChannel source = channel) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = start;
+                long remaining = count;
+                while (remaining > 0) {
+                    long sent = source.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        throw new EOFException("Template ended early at byte " + position);
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+                completed = true;
+            } catch (IOException | RuntimeException e) {
+                error = e.getMessage();
+                throw e;
+            } finally {
+                // Exactly once, however the body ends
+                if (completed) {
+                    jobQService.end(jobId, "File downloaded successfully", "SUCCESS");
+                    storageMetrics.bytesRead(StorageMetrics.TEMPLATE, campId, count);
+                    logger.info("Successfully downloaded template file for campaign: {}", campId);
+                } else {
+                    jobQService.end(jobId, error != null ? error : "Download failed", "FAILED");
+                }
+            }
+        };
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Error closing template channel: {}", e.getMessage());
+            }
         }
     }
 
@@ -203,10 +388,12 @@ public class TemplateController {
     public ResponseEntity<?> uploadTemplate(
             @PathVariable String campId,
             @RequestParam("file") MultipartFile file,
-            @RequestParam(value = "createBackup", defaultValue = "true") boolean createBackup) {
+            @RequestParam(value = "createBackup", defaultValue = "true") boolean createBackup,
+            @RequestParam(value = "includeContent", defaultValue = "false") boolean includeContent,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         logger.info("Upload template file request for campaign: {} (file: {})", campId, file.getOriginalFilename());
-        int jobId = jobQService.start("TEMPLATE", "UPLOAD", campId + " - " + file.getOriginalFilename());
+        String jobId = jobQService.start("TEMPLATE", "UPLOAD", campId, campId + " - " + file.getOriginalFilename());
 
         try {
             // Validate file
@@ -224,17 +411,30 @@ public class TemplateController {
                         .body(createErrorResponse("Validation error", "File must be an HTML file (.html extension)"));
             }
 
-            // Read file content
-            String htmlContent = new String(file.getBytes(), java.nio.charset.StandardCharsets.UTF_8);
-
-            // Update template using service
-            TemplateView updated = templateService.updateTemplateFromFile(campId, htmlContent, createBackup);
+            // Stream the upload into place; the content is never held in memory
+            TemplateView updated;
+            try (InputStream content = file.getInputStream()) {
+                updated = templateService.updateTemplateFromStream(campId, content, createBackup, ifMatch);
+            }
 
+            // Only the metadata view is audited
             jobQService.end(jobId, updated, "SUCCESS");
             logger.info("Successfully uploaded template file for campaign: {}", campId);
 
-            return ResponseEntity.ok(updated);
+            TemplateView response = updated;
+            if (includeContent) {
+                // Read after the campaign lock is released; a write that got in since is returned with its own ETag
+                response = templateService.getTemplate(campId);
+                if (updated.getContentHash().equals(response.getContentHash())) {
+                    response.setBackupName(updated.getBackupName());
+                }
+            }
+            return ResponseEntity.ok().eTag(ETags.strong(response.getContentHash())).body(response);
 
+        } catch (PreconditionFailedException e) {
+            logger.warn("Rejected stale upload for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return preconditionFailed(e);
         } catch (IllegalArgumentException e) {
             logger.warn("Invalid upload request for campaign {}: {}", campId, e.getMessage());
             jobQService.end(jobId, e.getMessage(), "FAILED");
@@ -253,6 +453,194 @@ public class TemplateController {
         }
     }
 
+    // ==================== BACKUP CATALOG ENDPOINTS ====================
+
+    /**
+     * Lists the campaign's backups, newest first, offset/limit at a time.
+     * Served from the backup catalog without touching the template directory.
+     */
+    @GetMapping(value = "/{campId}/template/backups", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> listBackups(
+            @PathVariable String campId,
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+
+        logger.info("List backups request for campaign: {}", campId);
+        String jobId = jobQService.start("TEMPLATE", "BACKUP_LIST", campId, campId);
+
+        try {
+            if (offset < 0 || limit < 1 || limit > MAX_BACKUP_PAGE) {
+                throw new IllegalArgumentException(
+                        "offset must be at least 0 and limit between 1 and " + MAX_BACKUP_PAGE);
+            }
+            List<TemplateBackup> backups = templateService.listBackups(campId);
+            int from = Math.min(offset, backups.size());
+            int to = Math.min(backups.size(), from + limit);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("campId", campId);
+            response.put("total", backups.size());
+            response.put("offset", offset);
+            response.put("limit", limit);
+            response.put("backups", backups.subList(from, to));
+
+            jobQService.end(jobId, "Listed " + (to - from) + " of " + backups.size() + " backups", "SUCCESS");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid backup list request for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.badRequest().body(createErrorResponse("Invalid request", e.getMessage()));
+        } catch (IOException e) {
+            logger.error("IO error listing backups for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("File system error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Unexpected error listing backups for campaign {}: {}", campId, e.getMessage(), e);
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Internal server error", "An unexpected error occurred"));
+        }
+    }
+
+    /**
+     * Makes a backup the live template again. The current template is backed
+     * up first unless createBackup=false; If-Match is honoured like PUT.
+     */
+    @PostMapping(value = "/{campId}/template/backups/{name}/restore", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> restoreBackup(
+            @PathVariable String campId,
+            @PathVariable String name,
+            @RequestParam(value = "createBackup", defaultValue = "true") boolean createBackup,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        logger.info("Restore backup {} request for campaign: {}", name, campId);
+        String jobId = jobQService.start("TEMPLATE", "RESTORE", campId, campId + " - " + name);
+
+        try {
+            TemplateView restored = templateService.restoreTemplate(campId, name, createBackup, ifMatch);
+            if (restored == null) {
+                jobQService.end(jobId, "Backup not found", "FAILED");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(createErrorResponse("Not found", "No backup " + name + " for campaign " + campId));
+            }
+            jobQService.end(jobId, restored, "SUCCESS");
+            logger.info("Restored backup {} for campaign: {}", name, campId);
+            return ResponseEntity.ok().eTag(ETags.strong(restored.getContentHash())).body(restored);
+        } catch (PreconditionFailedException e) {
+            logger.warn("Rejected stale restore for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return preconditionFailed(e);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid restore request for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.badRequest().body(createErrorResponse("Invalid request", e.getMessage()));
+        } catch (IOException e) {
+            logger.error("IO error restoring backup for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("File system error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Unexpected error restoring backup for campaign {}: {}", campId, e.getMessage(), e);
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Internal server error", "An unexpected error occurred"));
+        }
+    }
+
+    /**
+     * Removes backups beyond the newest keep and/or older than olderThanDays.
+     * Stored content is reclaimed by the next blob store sweep.
+     */
+    @PostMapping(value = "/{campId}/template/backups/prune", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> pruneBackups(
+            @PathVariable String campId,
+            @RequestParam(value = "keep", required = false) Integer keep,
+            @RequestParam(value = "olderThanDays", required = false) Integer olderThanDays) {
+
+        logger.info("Prune backups request for campaign: {} (keep={}, olderThanDays={})", campId, keep,
+                olderThanDays);
+        String jobId = jobQService.start("TEMPLATE", "PRUNE", campId,
+                campId + " - keep=" + keep + ", olderThanDays=" + olderThanDays);
+
+        try {
+            List<TemplateBackup> removed = templateService.pruneBackups(campId, keep, olderThanDays);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("campId", campId);
+            response.put("removed", removed.stream().map(TemplateBackup::getName).toList());
+            response.put("remaining", templateService.listBackups(campId).size());
+
+            jobQService.end(jobId, "Removed " + removed.size() + " backups", "SUCCESS");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid prune request for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.badRequest().body(createErrorResponse("Invalid request", e.getMessage()));
+        } catch (IOException e) {
+            logger.error("IO error pruning backups for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("File system error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Unexpected error pruning backups for campaign {}: {}", campId, e.getMessage(), e);
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Internal server error", "An unexpected error occurred"));
+        }
+    }
+
+    /**
+     * Copies the campaign's legacy backups/ files into the backup store. The
+     * files stay where they are unless a retention policy is configured.
+     */
+    @PostMapping(value = "/{campId}/template/backups/migrate-legacy", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> migrateLegacyBackups(@PathVariable String campId) {
+
+        logger.info("Migrate legacy backups request for campaign: {}", campId);
+        String jobId = jobQService.start("TEMPLATE", "MIGRATE", campId, campId);
+
+        try {
+            int migrated = templateService.migrateLegacyBackups(campId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("campId", campId);
+            response.put("migrated", migrated);
+            response.put("backups", templateService.listBackups(campId).size());
+
+            jobQService.end(jobId, "Migrated " + migrated + " backups", "SUCCESS");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid migrate request for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.badRequest().body(createErrorResponse("Invalid request", e.getMessage()));
+        } catch (IOException e) {
+            logger.error("IO error migrating backups for campaign {}: {}", campId, e.getMessage());
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("File system error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Unexpected error migrating backups for campaign {}: {}", campId, e.getMessage(), e);
+            jobQService.end(jobId, e.getMessage(), "FAILED");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Internal server error", "An unexpected error occurred"));
+        }
+    }
+
+    /**
+     * 412 response carrying the ETag of what is stored now, so the client can
+     * re-read and retry
+     */
+    private ResponseEntity<?> preconditionFailed(PreconditionFailedException e) {
+        Map<String, Object> response = createErrorResponse("Precondition failed", e.getMessage());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.PRECONDITION_FAILED);
+        if (e.getCurrentHash() != null) {
+            response.put("currentETag", ETags.strong(e.getCurrentHash()));
+            builder.eTag(ETags.strong(e.getCurrentHash()));
+        }
+        return builder.body(response);
+    }
+
     /**
      * Helper method to create consistent error responses
      */
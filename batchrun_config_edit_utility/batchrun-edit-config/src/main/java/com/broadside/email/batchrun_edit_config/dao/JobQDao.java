@@ -3,57 +3,279 @@ package com.broadside.email.batchrun_edit_config.dao;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
+import com.broadside.email.batchrun_edit_config.model.JobQEvent;
+import com.broadside.email.batchrun_edit_config.model.JobQQuery;
+import com.broadside.email.batchrun_edit_config.model.JobQRecord;
+import com.broadside.email.batchrun_edit_config.utils.Compression;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Repository
 @RequiredArgsConstructor
 public class JobQDao {
 
+    private static final int HISTORY_FETCH_SIZE = 500;
+
     private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Writes a batch of audit events in one transaction. Extracted payloads are
+     * stored first, once per hash and gzip-compressed. A START and END for the
+     * same uuid inside the batch are coalesced into a single complete row; END
+     * events whose START was flushed earlier become updates keyed by
+     * (uuid, starttime), which prunes to one partition. Inserts go out as a
+     * JDBC batch, which the driver rewrites into multi-row INSERTs.
+     */
+    public void writeBatch(List<JobQEvent> events, int queryTimeoutSeconds) throws SQLException {
+        Map<String, String> payloads = new LinkedHashMap<>();
+        Map<String, JobQEvent> starts = new LinkedHashMap<>();
+        Map<String, JobQEvent> completions = new LinkedHashMap<>();
+        List<JobQEvent> updates = new ArrayList<>();
 
-    public int insertStart(String jobType, String mode, String request, String uuid) throws Exception {
-        String sql = """
-                    INSERT INTO jobq (jobtype, mode, starttime, request, status, uuid)
-                    VALUES (?, ?, now(), ?, ?, ?)
-                    RETURNING id
+        for (JobQEvent event : events) {
+            if (event.getPayloads() != null) {
+                payloads.putAll(event.getPayloads());
+            }
+            if (event.getType() == JobQEvent.Type.START) {
+                starts.put(event.getUuid(), event);
+            } else if (starts.containsKey(event.getUuid())) {
+                completions.put(event.getUuid(), event);
+            } else {
+                updates.add(event);
+            }
+        }
+
+        String payloadSql = """
+                    INSERT INTO jobq_payload (hash, encoding, length, data, last_seen)
+                    VALUES (?, 'gzip', ?, ?, current_date)
+                    ON CONFLICT (hash) DO UPDATE
+                       SET last_seen = EXCLUDED.last_seen
+                     WHERE jobq_payload.last_seen < EXCLUDED.last_seen
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
+        String insertSql = """
+                    INSERT INTO jobq (jobtype, mode, campid, starttime, endtime, request, response, status, uuid, updated_at)
+                    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, now())
+                """;
 
-            ps.setString(1, jobType);
-            ps.setString(2, mode);
-            ps.setString(3, request);
-            ps.setString(4, "STARTED");
-            ps.setString(5, uuid);
+        String updateSql = """
+                    UPDATE jobq
+                       SET endtime = ?,
+                           response = ?,
+                           status = ?,
+                           updated_at = now()
+                     WHERE uuid = ?
+                       AND starttime = ?
+                """;
 
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
+        // Fallback when the start time is unknown (e.g. START spooled before a restart)
+        String updateAnySql = """
+                    UPDATE jobq
+                       SET endtime = ?,
+                           response = ?,
+                           status = ?,
+                           updated_at = now()
+                     WHERE uuid = ?
+                """;
+
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                if (!payloads.isEmpty()) {
+                    try (PreparedStatement ps = conn.prepareStatement(payloadSql)) {
+                        ps.setQueryTimeout(queryTimeoutSeconds);
+                        for (Map.Entry<String, String> payload : payloads.entrySet()) {
+                            ps.setString(1, payload.getKey());
+                            ps.setInt(2, payload.getValue().length());
+                            ps.setBytes(3, Compression.gzip(payload.getValue().getBytes(StandardCharsets.UTF_8)));
+                            ps.addBatch();
+                        }
+                        Timer.Sample sample = Timer.start();
+                        ps.executeBatch();
+                        sample.stop(timer("payload"));
+                    }
+                }
+
+                if (!starts.isEmpty()) {
+                    try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
+                        ps.setQueryTimeout(queryTimeoutSeconds);
+                        for (JobQEvent start : starts.values()) {
+                            JobQEvent end = completions.get(start.getUuid());
+                            ps.setString(1, start.getJobType());
+                            ps.setString(2, start.getMode());
+                            ps.setString(3, start.getCampId());
+                            ps.setObject(4, utc(start.getTime()));
+                            ps.setObject(5, end != null ? utc(end.getTime()) : null, Types.TIMESTAMP_WITH_TIMEZONE);
+                            ps.setString(6, start.getRequest());
+                            ps.setString(7, end != null ? end.getResponse() : null);
+                            ps.setString(8, end != null ? end.getStatus() : start.getStatus());
+                            ps.setString(9, start.getUuid());
+                            ps.addBatch();
+                        }
+                        Timer.Sample sample = Timer.start();
+                        ps.executeBatch();
+                        sample.stop(timer("insert"));
+                    }
+                }
+
+                if (!updates.isEmpty()) {
+                    try (PreparedStatement ps = conn.prepareStatement(updateSql);
+                            PreparedStatement psAny = conn.prepareStatement(updateAnySql)) {
+                        ps.setQueryTimeout(queryTimeoutSeconds);
+                        psAny.setQueryTimeout(queryTimeoutSeconds);
+                        boolean any = false;
+                        for (JobQEvent end : updates) {
+                            PreparedStatement target = end.getStartTime() != null ? ps : psAny;
+                            target.setObject(1, utc(end.getTime()));
+                            target.setString(2, end.getResponse());
+                            target.setString(3, end.getStatus());
+                            target.setString(4, end.getUuid());
+                            if (end.getStartTime() != null) {
+                                target.setObject(5, utc(end.getStartTime()));
+                            } else {
+                                any = true;
+                            }
+                            target.addBatch();
+                        }
+                        Timer.Sample sample = Timer.start();
+                        ps.executeBatch();
+                        if (any) {
+                            psAny.executeBatch();
+                        }
+                        sample.stop(timer("update"));
+                    }
                 }
+
+                Timer.Sample sample = Timer.start();
+                conn.commit();
+                sample.stop(timer("commit"));
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
         }
-        return 0;
     }
 
-    public void updateEnd(int id, String response, String status) throws Exception {
-        String sql = """
-                    UPDATE jobq
-                       SET endtime = now(),
-                           response = ?,
-                           status = ?
-                     WHERE id = ?
-                """;
+    @FunctionalInterface
+    public interface HistoryRowHandler {
+        void accept(JobQRecord record, String request, String response) throws Exception;
+    }
 
-        try (Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
+    /**
+     * Reads jobq rows matching the query, newest first. Paging is keyset-based
+     * on (starttime, id), so every page is an index range scan regardless of
+     * depth. Rows are fetched through a server-side cursor and handed over one
+     * at a time; the connection is held until the last one, so the handler
+     * must not wait on a client.
+     */
+    public void readHistory(JobQQuery query, int queryTimeoutSeconds, HistoryRowHandler handler) throws Exception {
+        StringBuilder sql = new StringBuilder("SELECT id, uuid, jobtype, mode, campid, status, starttime, endtime");
+        sql.append(query.isIncludeBodies() ? ", request, response" : ", NULL AS request, NULL AS response");
+        sql.append(" FROM jobq WHERE TRUE");
 
-            ps.setString(1, response);
-            ps.setString(2, status);
-            ps.setInt(3, id);
+        List<Object> params = new ArrayList<>();
+        if (query.getJobType() != null) {
+            sql.append(" AND jobtype = ?");
+            params.add(query.getJobType());
+        }
+        if (query.getMode() != null) {
+            sql.append(" AND mode = ?");
+            params.add(query.getMode());
+        }
+        if (query.getStatus() != null) {
+            sql.append(" AND status = ?");
+            params.add(query.getStatus());
+        }
+        if (query.getCampId() != null) {
+            sql.append(" AND campid = ?");
+            params.add(query.getCampId());
+        }
+        if (query.getFrom() != null) {
+            sql.append(" AND starttime >= ?");
+            params.add(utc(query.getFrom()));
+        }
+        if (query.getTo() != null) {
+            sql.append(" AND starttime < ?");
+            params.add(utc(query.getTo()));
+        }
+        if (query.getAfterStartTime() != null) {
+            sql.append(" AND (starttime, id) < (?, ?)");
+            params.add(utc(query.getAfterStartTime()));
+            params.add(query.getAfterId());
+        }
+        sql.append(" ORDER BY starttime DESC, id DESC LIMIT ?");
+        params.add(query.getLimit());
 
-            ps.executeUpdate();
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            // The driver only uses a cursor (fetchSize) inside a transaction
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                ps.setFetchSize(HISTORY_FETCH_SIZE);
+                ps.setQueryTimeout(queryTimeoutSeconds);
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        JobQRecord record = new JobQRecord();
+                        record.setId(rs.getLong("id"));
+                        record.setUuid(rs.getString("uuid"));
+                        record.setJobType(rs.getString("jobtype"));
+                        record.setMode(rs.getString("mode"));
+                        record.setCampId(rs.getString("campid"));
+                        record.setStatus(rs.getString("status"));
+                        record.setStartTime(toInstant(rs.getObject("starttime", OffsetDateTime.class)));
+                        record.setEndTime(toInstant(rs.getObject("endtime", OffsetDateTime.class)));
+                        handler.accept(record, rs.getString("request"), rs.getString("response"));
+                    }
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(autoCommit);
+            }
         }
     }
+
+    /**
+     * Returns the decompressed content stored for a payload hash, or null.
+     */
+    public byte[] findPayload(String hash) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement("SELECT data FROM jobq_payload WHERE hash = ?")) {
+            ps.setString(1, hash);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Compression.gunzip(rs.getBytes(1)) : null;
+            }
+        }
+    }
+
+    // Time the database spends on one kind of jobq write; pool wait is in hikaricp.connections.acquire
+    private Timer timer(String operation) {
+        return meterRegistry.timer("batchrun.jobq.db", "operation", operation);
+    }
+
+    private static Instant toInstant(OffsetDateTime time) {
+        return time != null ? time.toInstant() : null;
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
 }
@@ -0,0 +1,304 @@
+package com.broadside.email.batchrun_edit_config.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import com.broadside.email.batchrun_edit_config.model.LatencyRollup;
+import com.broadside.email.batchrun_edit_config.utils.LatencySketch;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental latency rollups over jobq. Each run folds the rows that were
+ * written with their endtime since the stored watermark into per-minute and
+ * per-hour buckets of that endtime, merging with whatever those buckets
+ * already hold. The watermark follows jobq.updated_at rather than endtime, so
+ * an END that reaches the database late (a slow flush or a spool replay) is
+ * still counted, in the bucket it belongs to.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JobQRollupDao {
+
+    public static final String MINUTE = "MINUTE";
+    public static final String HOUR = "HOUR";
+
+    // Serializes rollup runs across instances sharing the database
+    private static final long ROLLUP_LOCK_KEY = 0x6a6f6271726f6c6cL;
+    private static final String STATE_NAME = "latency";
+    private static final int FETCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+
+    private record BucketKey(String granularity, Instant bucketStart, String jobType, String mode, String status) {
+    }
+
+    /**
+     * Folds ended jobq rows with updated_at in (watermark, now - lag] into the
+     * rollup tables and advances the watermark. Both ends are database time,
+     * like updated_at; the lag must outlast the longest jobq write transaction,
+     * whose rows carry its start time. The first run starts backfill before
+     * now. Returns the number of rows folded, or -1 when another instance holds
+     * the rollup lock.
+     */
+    public int rollup(Duration backfill, Duration lag) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                if (!tryLock(conn)) {
+                    conn.rollback();
+                    return -1;
+                }
+
+                Instant now = databaseNow(conn);
+                Instant upTo = now.minus(lag);
+                Instant watermark = readWatermark(conn);
+                if (watermark == null) {
+                    watermark = now.minus(backfill);
+                }
+                if (!upTo.isAfter(watermark)) {
+                    conn.rollback();
+                    return 0;
+                }
+
+                Map<BucketKey, LatencyRollup> buckets = new HashMap<>();
+                int rows = aggregate(conn, watermark, upTo, buckets);
+                for (Map.Entry<BucketKey, LatencyRollup> bucket : buckets.entrySet()) {
+                    mergeBucket(conn, bucket.getKey(), bucket.getValue());
+                }
+                writeWatermark(conn, upTo);
+
+                conn.commit();
+                return rows;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    public List<LatencyRollup> findRollups(String granularity, Instant from, Instant to, String jobType,
+            String mode, String status) throws SQLException {
+        StringBuilder sql = new StringBuilder("""
+                    SELECT bucket_start, jobtype, mode, status, count, error_count, sum_ms, max_ms, sketch
+                      FROM jobq_rollup
+                     WHERE granularity = ?
+                       AND bucket_start >= ?
+                       AND bucket_start < ?
+                """);
+        List<Object> params = new ArrayList<>(List.of(granularity, utc(from), utc(to)));
+        if (jobType != null) {
+            sql.append(" AND jobtype = ?");
+            params.add(jobType);
+        }
+        if (mode != null) {
+            sql.append(" AND mode = ?");
+            params.add(mode);
+        }
+        if (status != null) {
+            sql.append(" AND status = ?");
+            params.add(status);
+        }
+        sql.append(" ORDER BY bucket_start, jobtype, mode, status");
+
+        List<LatencyRollup> result = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    LatencyRollup rollup = new LatencyRollup();
+                    rollup.setGranularity(granularity);
+                    rollup.setBucketStart(rs.getObject("bucket_start", OffsetDateTime.class).toInstant());
+                    rollup.setJobType(rs.getString("jobtype"));
+                    rollup.setMode(rs.getString("mode"));
+                    rollup.setStatus(rs.getString("status"));
+                    rollup.setCount(rs.getLong("count"));
+                    rollup.setErrorCount(rs.getLong("error_count"));
+                    rollup.setSumMs(rs.getDouble("sum_ms"));
+                    rollup.setMaxMs(rs.getDouble("max_ms"));
+                    rollup.setSketch(LatencySketch.fromBytes(rs.getBytes("sketch")));
+                    result.add(rollup);
+                }
+            }
+        }
+        return result;
+    }
+
+    public int deleteRollupsBefore(String granularity, Instant cutoff) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement(
+                        "DELETE FROM jobq_rollup WHERE granularity = ? AND bucket_start < ?")) {
+            ps.setString(1, granularity);
+            ps.setObject(2, utc(cutoff));
+            return ps.executeUpdate();
+        }
+    }
+
+    private int aggregate(Connection conn, Instant watermark, Instant upTo, Map<BucketKey, LatencyRollup> buckets)
+            throws SQLException {
+        String sql = """
+                    SELECT jobtype, mode, status, endtime,
+                           EXTRACT(EPOCH FROM (endtime - starttime)) * 1000 AS ms
+                      FROM jobq
+                     WHERE updated_at > ?
+                       AND updated_at <= ?
+                       AND endtime IS NOT NULL
+                """;
+
+        int rows = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setObject(1, utc(watermark));
+            ps.setObject(2, utc(upTo));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String jobType = rs.getString("jobtype");
+                    String mode = rs.getString("mode");
+                    String status = rs.getString("status");
+                    Instant end = rs.getObject("endtime", OffsetDateTime.class).toInstant();
+                    double ms = Math.max(0, rs.getDouble("ms"));
+
+                    add(buckets, new BucketKey(MINUTE, end.truncatedTo(ChronoUnit.MINUTES), jobType, mode, status), ms);
+                    add(buckets, new BucketKey(HOUR, end.truncatedTo(ChronoUnit.HOURS), jobType, mode, status), ms);
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void add(Map<BucketKey, LatencyRollup> buckets, BucketKey key, double ms) {
+        LatencyRollup bucket = buckets.computeIfAbsent(key, k -> {
+            LatencyRollup r = new LatencyRollup();
+            r.setSketch(new LatencySketch());
+            return r;
+        });
+        bucket.setCount(bucket.getCount() + 1);
+        // PARTIAL (a bulk update where only some campaigns failed) is not an error here; it has its own status
+        if ("FAILED".equals(key.status())) {
+            bucket.setErrorCount(bucket.getErrorCount() + 1);
+        }
+        bucket.setSumMs(bucket.getSumMs() + ms);
+        bucket.setMaxMs(Math.max(bucket.getMaxMs(), ms));
+        bucket.getSketch().add(ms);
+    }
+
+    private void mergeBucket(Connection conn, BucketKey key, LatencyRollup delta) throws SQLException {
+        String selectSql = """
+                    SELECT count, error_count, sum_ms, max_ms, sketch
+                      FROM jobq_rollup
+                     WHERE granularity = ? AND bucket_start = ? AND jobtype = ? AND mode = ? AND status = ?
+                       FOR UPDATE
+                """;
+
+        String upsertSql = """
+                    INSERT INTO jobq_rollup
+                           (granularity, bucket_start, jobtype, mode, status, count, error_count, sum_ms, max_ms, sketch)
+                    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                    ON CONFLICT (granularity, bucket_start, jobtype, mode, status) DO UPDATE
+                       SET count = EXCLUDED.count,
+                           error_count = EXCLUDED.error_count,
+                           sum_ms = EXCLUDED.sum_ms,
+                           max_ms = EXCLUDED.max_ms,
+                           sketch = EXCLUDED.sketch
+                """;
+
+        long count = delta.getCount();
+        long errorCount = delta.getErrorCount();
+        double sumMs = delta.getSumMs();
+        double maxMs = delta.getMaxMs();
+        LatencySketch sketch = delta.getSketch();
+
+        try (PreparedStatement ps = conn.prepareStatement(selectSql)) {
+            bindKey(ps, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    count += rs.getLong("count");
+                    errorCount += rs.getLong("error_count");
+                    sumMs += rs.getDouble("sum_ms");
+                    maxMs = Math.max(maxMs, rs.getDouble("max_ms"));
+                    LatencySketch merged = LatencySketch.fromBytes(rs.getBytes("sketch"));
+                    merged.merge(sketch);
+                    sketch = merged;
+                }
+            }
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(upsertSql)) {
+            bindKey(ps, key);
+            ps.setLong(6, count);
+            ps.setLong(7, errorCount);
+            ps.setDouble(8, sumMs);
+            ps.setDouble(9, maxMs);
+            ps.setBytes(10, sketch.toBytes());
+            ps.executeUpdate();
+        }
+    }
+
+    private static void bindKey(PreparedStatement ps, BucketKey key) throws SQLException {
+        ps.setString(1, key.granularity());
+        ps.setObject(2, utc(key.bucketStart()));
+        ps.setString(3, key.jobType());
+        ps.setString(4, key.mode());
+        ps.setString(5, key.status());
+    }
+
+    private static boolean tryLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT pg_try_advisory_xact_lock(?)")) {
+            ps.setLong(1, ROLLUP_LOCK_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private static Instant databaseNow(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT now()");
+                ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getObject(1, OffsetDateTime.class).toInstant();
+        }
+    }
+
+    private static Instant readWatermark(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT watermark FROM jobq_rollup_state WHERE name = ?")) {
+            ps.setString(1, STATE_NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getObject(1, OffsetDateTime.class).toInstant() : null;
+            }
+        }
+    }
+
+    private static void writeWatermark(Connection conn, Instant watermark) throws SQLException {
+        String sql = """
+                    INSERT INTO jobq_rollup_state (name, watermark) VALUES (?, ?)
+                    ON CONFLICT (name) DO UPDATE SET watermark = EXCLUDED.watermark
+                """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, STATE_NAME);
+            ps.setObject(2, utc(watermark));
+            ps.executeUpdate();
+        }
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,279 @@
+package com.broadside.email.batchrun_edit_config.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * DDL for the jobq tables: schema bootstrap and partition management. Partition
+ * names are generated by the caller, never taken from user input.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JobQSchemaDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQSchemaDao.class);
+
+    private final DataSource dataSource;
+
+    /**
+     * Creates the partitioned jobq table, the payload table and the rollup
+     * tables if missing. When migrateLegacy is set, an old unpartitioned jobq
+     * is renamed to jobq_legacy and its rows are copied into the new table,
+     * with a daily partition (named by partitionName) for every day they
+     * cover. The copy runs in the same transaction as the rename, so a
+     * failure leaves the old table as it was.
+     */
+    public void ensureSchema(boolean migrateLegacy, Function<LocalDate, String> partitionName) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            String kind = tableKind(conn, "jobq");
+            if ("r".equals(kind)) {
+                if (!migrateLegacy) {
+                    throw new SQLException("jobq exists but is not partitioned; enable jobq.schema.migrate-legacy");
+                }
+                conn.setAutoCommit(false);
+                try {
+                    int copied = migrateLegacy(conn, partitionName);
+                    conn.commit();
+                    logger.warn("Migrated {} rows of unpartitioned jobq; the old table is kept as jobq_legacy", copied);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+            ScriptUtils.executeSqlScript(conn, new ClassPathResource("db/jobq.sql"));
+            ScriptUtils.executeSqlScript(conn, new ClassPathResource("db/jobq_payload.sql"));
+            ScriptUtils.executeSqlScript(conn, new ClassPathResource("db/jobq_rollup.sql"));
+        }
+    }
+
+    private int migrateLegacy(Connection conn, Function<LocalDate, String> partitionName) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("ALTER TABLE jobq RENAME TO jobq_legacy");
+        }
+        ScriptUtils.executeSqlScript(conn, new ClassPathResource("db/jobq.sql"));
+
+        // Old rows may be timestamp without time zone; the cast matches how the insert converts them
+        List<LocalDate> days = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("SELECT DISTINCT (starttime::timestamptz AT TIME ZONE 'UTC')::date"
+                        + " FROM jobq_legacy WHERE starttime IS NOT NULL")) {
+            while (rs.next()) {
+                days.add(rs.getObject(1, LocalDate.class));
+            }
+        }
+        try (Statement st = conn.createStatement()) {
+            for (LocalDate day : days) {
+                st.execute(createPartitionSql(partitionName.apply(day), day));
+            }
+        }
+
+        // Tables created before campid was added do not have it
+        String campId = hasColumn(conn, "jobq_legacy", "campid") ? "campid" : "NULL";
+        int copied;
+        try (Statement st = conn.createStatement()) {
+            copied = st.executeUpdate("""
+                        INSERT INTO jobq (id, jobtype, mode, campid, starttime, endtime, request, response, status, uuid)
+                        SELECT id, jobtype, mode, %s, starttime, endtime, request, response, status, uuid
+                          FROM jobq_legacy
+                         WHERE starttime IS NOT NULL
+                    """.formatted(campId));
+            st.execute("SELECT setval(pg_get_serial_sequence('jobq', 'id'), max(id))"
+                    + " FROM jobq HAVING max(id) IS NOT NULL");
+        }
+        return copied;
+    }
+
+    public List<String> listPartitions() throws SQLException {
+        String sql = """
+                    SELECT c.relname
+                      FROM pg_inherits i
+                      JOIN pg_class c ON c.oid = i.inhrelid
+                      JOIN pg_class p ON p.oid = i.inhparent
+                     WHERE p.relname = 'jobq'
+                       AND p.relnamespace = to_regnamespace(current_schema())
+                """;
+
+        List<String> names = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement(sql);
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Creates the partition covering [day, day + 1) in UTC. Rows of that day
+     * already in jobq_default (a skewed clock, a replay ahead of the
+     * pre-created range) would make a plain PARTITION OF fail, so when there
+     * are any the partition is built standalone, the rows are moved into it
+     * and it is attached, all in one transaction.
+     */
+    public void createPartition(String name, LocalDate day) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            if (tableKind(conn, name) != null) {
+                return;
+            }
+            if (!defaultHasRows(conn, day)) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute(createPartitionSql(name, day));
+                }
+                return;
+            }
+            conn.setAutoCommit(false);
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TABLE " + name + " (LIKE jobq INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                int moved = st.executeUpdate("WITH moved AS (DELETE FROM jobq_default WHERE " + dayRange(day)
+                        + " RETURNING *) INSERT INTO " + name + " SELECT * FROM moved");
+                st.execute("ALTER TABLE jobq ATTACH PARTITION " + name + " " + partitionBounds(day));
+                conn.commit();
+                logger.warn("Moved {} jobq rows from jobq_default into new partition {}", moved, name);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private boolean defaultHasRows(Connection conn, LocalDate day) throws SQLException {
+        if (tableKind(conn, "jobq_default") == null) {
+            return false;
+        }
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("SELECT 1 FROM jobq_default WHERE " + dayRange(day) + " LIMIT 1")) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Removes rows older than cutoff from jobq_default, which retention by
+     * partition never reaches. With an archiveName they are moved to that
+     * table (created on first use) instead of deleted.
+     */
+    public int pruneDefault(LocalDate cutoff, String archiveName) throws SQLException {
+        String expired = "starttime < '" + cutoff + " 00:00:00+00'";
+        try (Connection conn = dataSource.getConnection()) {
+            if (tableKind(conn, "jobq_default") == null) {
+                return 0;
+            }
+            if (archiveName == null) {
+                try (Statement st = conn.createStatement()) {
+                    return st.executeUpdate("DELETE FROM jobq_default WHERE " + expired);
+                }
+            }
+            conn.setAutoCommit(false);
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS " + archiveName + " (LIKE jobq INCLUDING DEFAULTS)");
+                int moved = st.executeUpdate("WITH moved AS (DELETE FROM jobq_default WHERE " + expired
+                        + " RETURNING *) INSERT INTO " + archiveName + " SELECT * FROM moved");
+                conn.commit();
+                return moved;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static String createPartitionSql(String name, LocalDate day) {
+        return "CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF jobq " + partitionBounds(day);
+    }
+
+    private static String partitionBounds(LocalDate day) {
+        return "FOR VALUES FROM ('" + day + " 00:00:00+00') TO ('" + day.plusDays(1) + " 00:00:00+00')";
+    }
+
+    private static String dayRange(LocalDate day) {
+        return "starttime >= '" + day + " 00:00:00+00' AND starttime < '" + day.plusDays(1) + " 00:00:00+00'";
+    }
+
+    public void dropPartition(String name) throws SQLException {
+        execute("DROP TABLE IF EXISTS " + name);
+    }
+
+    /**
+     * Detaches a partition and keeps it as a standalone table.
+     */
+    public void archivePartition(String name, String archiveName) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement st = conn.createStatement()) {
+                st.execute("ALTER TABLE jobq DETACH PARTITION " + name);
+                st.execute("ALTER TABLE " + name + " RENAME TO " + archiveName);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Deletes stored payloads that no jobq row has referenced since cutoff.
+     */
+    public int deletePayloadsNotSeenSince(LocalDate cutoff) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement("DELETE FROM jobq_payload WHERE last_seen < ?")) {
+            ps.setObject(1, cutoff);
+            return ps.executeUpdate();
+        }
+    }
+
+    private String tableKind(Connection conn, String table) throws SQLException {
+        String sql = """
+                    SELECT c.relkind
+                      FROM pg_class c
+                     WHERE c.relname = ?
+                       AND c.relnamespace = to_regnamespace(current_schema())
+                """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        String sql = """
+                    SELECT 1
+                      FROM information_schema.columns
+                     WHERE table_schema = current_schema()
+                       AND table_name = ?
+                       AND column_name = ?
+                """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+                Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.broadside.email.batchrun_edit_config.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Getter
+@Setter
+public class BulkConfigUpdateRequest {
+
+    // Explicit targets; when set, the selector below is ignored
+    private List<String> campIds;
+
+    // Selector: campaigns whose indexed field has this value, and/or whose campId starts with prefix
+    private String field;
+    private String value;
+    private String prefix;
+
+    // Overlay applied to every target, as in a single PUT
+    private ConfigUpdateRequest update;
+
+    // Optional per-campaign If-Match values (campId -> ETag)
+    private Map<String, String> ifMatch;
+}
@@ -0,0 +1,22 @@
+package com.broadside.email.batchrun_edit_config.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+@Data
+@Getter
+@Setter
+public class BulkConfigUpdateResult {
+
+    public static final String UPDATED = "UPDATED";
+    public static final String PRECONDITION_FAILED = "PRECONDITION_FAILED";
+    public static final String FAILED = "FAILED";
+
+    private String campId;
+    private String status;
+
+    // New content hash when UPDATED, the current one when PRECONDITION_FAILED
+    private String contentHash;
+    private String error;
+}
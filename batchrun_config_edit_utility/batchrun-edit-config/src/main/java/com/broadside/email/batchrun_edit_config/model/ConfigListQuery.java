@@ -0,0 +1,22 @@
+package com.broadside.email.batchrun_edit_config.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Data
+@Getter
+@Setter
+public class ConfigListQuery {
+
+    // Filters; null means "any"
+    private String prefix;
+    private Instant modifiedSince;
+
+    // Keyset cursor: only campIds sorting strictly after this one
+    private String after;
+
+    private int limit;
+}
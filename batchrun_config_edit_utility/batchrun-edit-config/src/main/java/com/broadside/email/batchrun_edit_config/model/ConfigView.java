@@ -31,4 +31,8 @@ public class ConfigView {
 
     // [namespace]
     private String namespaceConstant; // e.g. "campid"
+
+    // File state, for conditional requests
+    private String contentHash;
+    private String lastModified;
 }
@@ -0,0 +1,27 @@
+package com.broadside.email.batchrun_edit_config.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A structural problem found in a template, located by 1-based line and
+ * column (in characters).
+ */
+@Data
+@Getter
+@Setter
+public class HtmlFinding {
+
+    public static final String UNCLOSED_COMMENT = "UNCLOSED_COMMENT";
+    public static final String UNTERMINATED_TAG = "UNTERMINATED_TAG";
+    public static final String UNCLOSED_TAG = "UNCLOSED_TAG";
+    public static final String UNEXPECTED_END_TAG = "UNEXPECTED_END_TAG";
+    public static final String MISSING_HTML = "MISSING_HTML";
+    public static final String MISSING_BODY = "MISSING_BODY";
+
+    private String code;
+    private String message;
+    private int line;
+    private int column;
+}
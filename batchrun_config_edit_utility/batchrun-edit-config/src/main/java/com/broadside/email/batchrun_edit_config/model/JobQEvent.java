@@ -0,0 +1,70 @@
+package com.broadside.email.batchrun_edit_config.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * A single audit event queued for the jobq writer. A START event becomes a new
+ * jobq row, an END event completes the row with the same uuid.
+ */
+@Data
+@Getter
+@Setter
+public class JobQEvent {
+
+    public enum Type {
+        START, END
+    }
+
+    private Type type;
+    private String uuid;
+    private Instant time;
+
+    // START only
+    private String jobType;
+    private String mode;
+    private String campId;
+    private String request;
+
+    // END only; startTime lets the update target a single jobq partition
+    private Instant startTime;
+    private String response;
+    private String status;
+
+    // Large request/response fields pulled out of the row, keyed by SHA-256
+    private Map<String, String> payloads;
+
+    public static JobQEvent start(String uuid, String jobType, String mode, String campId, String request) {
+        JobQEvent event = new JobQEvent();
+        event.setType(Type.START);
+        event.setUuid(uuid);
+        event.setTime(now());
+        event.setJobType(jobType);
+        event.setMode(mode);
+        event.setCampId(campId);
+        event.setRequest(request);
+        event.setStatus("STARTED");
+        return event;
+    }
+
+    public static JobQEvent end(String uuid, Instant startTime, String response, String status) {
+        JobQEvent event = new JobQEvent();
+        event.setType(Type.END);
+        event.setUuid(uuid);
+        event.setTime(now());
+        event.setStartTime(startTime);
+        event.setResponse(response);
+        event.setStatus(status);
+        return event;
+    }
+
+    // Postgres keeps microseconds; truncating keeps starttime equality lookups exact
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+}
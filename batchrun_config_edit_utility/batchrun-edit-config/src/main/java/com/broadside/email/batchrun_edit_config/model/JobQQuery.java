@@ -0,0 +1,30 @@
+package com.broadside.email.batchrun_edit_config.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Data
+@Getter
+@Setter
+public class JobQQuery {
+
+    // Filters; null means "any"
+    private String jobType;
+    private String mode;
+    private String status;
+    private String campId;
+
+    // starttime range [from, to)
+    private Instant from;
+    private Instant to;
+
+    // Keyset cursor: only rows strictly before (afterStartTime, afterId), newest first
+    private Instant afterStartTime;
+    private Long afterId;
+
+    private int limit;
+    private boolean includeBodies;
+}
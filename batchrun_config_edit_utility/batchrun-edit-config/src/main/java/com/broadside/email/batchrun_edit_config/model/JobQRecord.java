@@ -0,0 +1,31 @@
+package com.broadside.email.batchrun_edit_config.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import tools.jackson.databind.JsonNode;
+
+import java.time.Instant;
+
+@Data
+@Getter
+@Setter
+public class JobQRecord {
+
+    private long id;
+    private String uuid;
+    private String jobType;
+    private String mode;
+    private String campId;
+    private String status;
+    private Instant startTime;
+    private Instant endTime;
+    private Long durationMs;
+
+    // Stored JSON; large fields appear as {"$payload": hash, "length": n}
+    private JsonNode request;
+    private JsonNode response;
+
+    // Pass as "after" to fetch the next page
+    private String cursor;
+}
@@ -0,0 +1,37 @@
+package com.broadside.email.batchrun_edit_config.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.broadside.email.batchrun_edit_config.utils.LatencySketch;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Data
+@Getter
+@Setter
+public class LatencyRollup {
+
+    private String granularity; // MINUTE or HOUR
+    private Instant bucketStart;
+    private String jobType;
+    private String mode;
+    private String status; // null when statuses are merged
+
+    private long count;
+    private long errorCount; // FAILED only; PARTIAL counts as its own status
+    private double errorRate;
+    private double avgMs;
+    private double maxMs;
+    private Double p50Ms;
+    private Double p95Ms;
+    private Double p99Ms;
+
+    @JsonIgnore
+    private double sumMs;
+
+    @JsonIgnore
+    private LatencySketch sketch;
+}
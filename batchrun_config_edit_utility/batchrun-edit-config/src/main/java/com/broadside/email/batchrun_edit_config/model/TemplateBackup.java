@@ -0,0 +1,25 @@
+package com.broadside.email.batchrun_edit_config.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One backed-up version of a campaign's template. The content is a blob in
+ * the template blob store, referenced by its hash.
+ */
+@Data
+@Getter
+@Setter
+public class TemplateBackup {
+
+    // e.g. "welcome-email_20251202_142530.html", unique within the campaign
+    private String name;
+
+    // The template file the content was taken from, e.g. "welcome-email.html"
+    private String sourceName;
+
+    private String createdAt;
+    private long size;
+    private String contentHash;
+}
@@ -0,0 +1,29 @@
+package com.broadside.email.batchrun_edit_config.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * What is known about a campaign's template file, stored next to it so it
+ * survives restarts. Only trusted while the file's size and lastModified
+ * still match.
+ */
+@Data
+@Getter
+@Setter
+public class TemplateSidecar {
+
+    // Of the template file this describes
+    private long size;
+    private String lastModified;
+    private String contentHash;
+
+    private List<HtmlFinding> findings;
+
+    // From the update that wrote the template; null for uploads and external edits
+    private String description;
+    private String version;
+}
@@ -4,6 +4,8 @@ import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 @Data
 @Getter
 @Setter
@@ -21,9 +23,11 @@ public class TemplateView {
     private String version;
     private String contentHash; // For integrity checking
     private boolean hasBackup;
-    private String backupPath;
+    private String backupPath; // the campaign's backup manifest
+    private String backupName; // set by writes that took a backup: the backup's name in the manifest
 
     // Validation info
     private boolean isValidHtml;
     private String validationMessage;
+    private List<HtmlFinding> validationFindings;
 }
@@ -0,0 +1,240 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.broadside.email.batchrun_edit_config.model.ConfigListQuery;
+import com.broadside.email.batchrun_edit_config.model.ConfigView;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory inverted index over every config: for each indexed field, which
+ * campaigns have a given value. Built in parallel once the application is up,
+ * then kept current from {@link ConfigChangedEvent}s.
+ *
+ * Indexed fields are attachmentDir, templatePath, namespaceConstant,
+ * metadataColumn (one entry per column) and msgHeader.&lt;name&gt; (one per
+ * header). Field names and values are matched case-insensitively.
+ */
+@Service
+public class CampaignIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CampaignIndexService.class);
+
+    public static final String ATTACHMENT_DIR = "attachmentdir";
+    public static final String TEMPLATE_PATH = "templatepath";
+    public static final String NAMESPACE_CONSTANT = "namespaceconstant";
+    public static final String METADATA_COLUMN = "metadatacolumn";
+    public static final String MSG_HEADER_PREFIX = "msgheader.";
+
+    @Autowired
+    private ConfigService configService;
+
+    /**
+     * field -> value -> campIds, plus each campaign's own entries so it can be
+     * taken out again when its config changes.
+     */
+    private static final class Index {
+        final Map<String, Map<String, Set<String>>> postings = new ConcurrentHashMap<>();
+        final Map<String, Map<String, Set<String>>> byCampaign = new ConcurrentHashMap<>();
+
+        void put(String campId, Map<String, Set<String>> entries) {
+            remove(campId);
+            entries.forEach((field, values) -> values.forEach(value -> postings
+                    .computeIfAbsent(field, f -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(value, v -> ConcurrentHashMap.newKeySet())
+                    .add(campId)));
+            byCampaign.put(campId, entries);
+        }
+
+        void remove(String campId) {
+            Map<String, Set<String>> old = byCampaign.remove(campId);
+            if (old == null) {
+                return;
+            }
+            old.forEach((field, values) -> {
+                Map<String, Set<String>> byValue = postings.get(field);
+                if (byValue == null) {
+                    return;
+                }
+                for (String value : values) {
+                    byValue.computeIfPresent(value, (v, campIds) -> {
+                        campIds.remove(campId);
+                        return campIds.isEmpty() ? null : campIds;
+                    });
+                }
+            });
+        }
+    }
+
+    // Swapped whole on a rebuild so readers never see a half-built index
+    private volatile Index index = new Index();
+    private volatile boolean ready;
+    private volatile long lastBuildMillis;
+
+    // All index writes happen on this one thread, in the order changes were seen
+    private ExecutorService updater;
+
+    @PostConstruct
+    void start() {
+        updater = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "campaign-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        updater.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        updater.execute(this::rebuild);
+    }
+
+    @EventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        if (event.campId() == null) {
+            updater.execute(this::rebuild);
+        } else {
+            updater.execute(() -> reindex(event.campId()));
+        }
+    }
+
+    /**
+     * Without the directory watcher, edits made directly on disk produce no
+     * events, so the index is rebuilt periodically instead.
+     */
+    @Scheduled(initialDelayString = "${config.index.rebuild-interval-ms:300000}",
+            fixedDelayString = "${config.index.rebuild-interval-ms:300000}")
+    public void rebuildIfNotWatching() {
+        if (ready && !configService.isWatching()) {
+            updater.execute(this::rebuild);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the campIds whose field has the given value, sorted.
+     *
+     * @throws IllegalArgumentException if the field is not indexed
+     */
+    public List<String> find(String field, String value) {
+        String key = normalizeField(field);
+        Map<String, Set<String>> byValue = index.postings.get(key);
+        if (byValue == null) {
+            return List.of();
+        }
+        Set<String> campIds = byValue.get(normalize(value));
+        if (campIds == null) {
+            return List.of();
+        }
+        List<String> result = new ArrayList<>(campIds);
+        Collections.sort(result);
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Index current = index;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ready", ready);
+        result.put("campaigns", current.byCampaign.size());
+        result.put("fields", current.postings.size());
+        result.put("lastBuildMillis", lastBuildMillis);
+        result.put("watching", configService.isWatching());
+        return result;
+    }
+
+    private void rebuild() {
+        long started = System.nanoTime();
+        Index fresh = new Index();
+        ConfigListQuery query = new ConfigListQuery();
+        query.setLimit(Integer.MAX_VALUE);
+        try {
+            List<String> campIds = configService.listConfigs(query).campIds();
+            configService.forEachConfig(campIds, view -> fresh.put(view.getCampId(), entriesOf(view)));
+        } catch (IOException e) {
+            logger.warn("Could not build campaign index: {}", e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        index = fresh;
+        ready = true;
+        lastBuildMillis = (System.nanoTime() - started) / 1_000_000;
+        logger.info("Indexed {} campaigns in {} ms", fresh.byCampaign.size(), lastBuildMillis);
+    }
+
+    private void reindex(String campId) {
+        try {
+            index.put(campId, entriesOf(configService.getConfig(campId)));
+        } catch (IOException e) {
+            // Deleted or unreadable
+            index.remove(campId);
+        }
+    }
+
+    private static Map<String, Set<String>> entriesOf(ConfigView view) {
+        Map<String, Set<String>> entries = new LinkedHashMap<>();
+        add(entries, ATTACHMENT_DIR, view.getAttachmentDir());
+        add(entries, TEMPLATE_PATH, view.getTemplatePath());
+        add(entries, NAMESPACE_CONSTANT, view.getNamespaceConstant());
+        if (view.getMetadataColumns() != null) {
+            view.getMetadataColumns().forEach(column -> add(entries, METADATA_COLUMN, column));
+        }
+        if (view.getMsgHeaders() != null) {
+            view.getMsgHeaders().forEach((name, value) -> add(entries, MSG_HEADER_PREFIX + normalize(name), value));
+        }
+        return entries;
+    }
+
+    private static void add(Map<String, Set<String>> entries, String field, String value) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        entries.computeIfAbsent(field, f -> new HashSet<>()).add(normalize(value));
+    }
+
+    private static String normalizeField(String field) {
+        String key = normalize(field);
+        if (key.startsWith(MSG_HEADER_PREFIX) && key.length() > MSG_HEADER_PREFIX.length()) {
+            return key;
+        }
+        switch (key) {
+            case ATTACHMENT_DIR, TEMPLATE_PATH, NAMESPACE_CONSTANT, METADATA_COLUMN:
+                return key;
+            default:
+                throw new IllegalArgumentException("Field is not indexed: " + field);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,9 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+/**
+ * Published whenever a stored config may have changed, whether written
+ * through this service or edited on disk. A null campId means any config may
+ * have changed.
+ */
+public record ConfigChangedEvent(String campId) {
+}
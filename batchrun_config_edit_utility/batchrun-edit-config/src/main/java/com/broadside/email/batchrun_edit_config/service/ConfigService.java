@@ -1,47 +1,202 @@
 package com.broadside.email.batchrun_edit_config.service;
 
-import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import com.broadside.email.batchrun_edit_config.model.BulkConfigUpdateResult;
+import com.broadside.email.batchrun_edit_config.model.ConfigListQuery;
 import com.broadside.email.batchrun_edit_config.model.ConfigUpdateRequest;
 import com.broadside.email.batchrun_edit_config.model.ConfigView;
+import com.broadside.email.batchrun_edit_config.utils.AtomicFiles;
+import com.broadside.email.batchrun_edit_config.utils.CampaignLockManager;
 import com.broadside.email.batchrun_edit_config.utils.ConfigParser;
 import com.broadside.email.batchrun_edit_config.utils.ConfigWriter;
+import com.broadside.email.batchrun_edit_config.utils.DirectoryWatcher;
+import com.broadside.email.batchrun_edit_config.utils.ETags;
+import com.broadside.email.batchrun_edit_config.utils.Hashing;
+import com.broadside.email.batchrun_edit_config.utils.StorageMetrics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class ConfigService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ConfigService.class);
+
+    private static final String CONFIG_SUFFIX = ".conf";
+
     private final ConfigParser parser = new ConfigParser();
     private final ConfigWriter writer = new ConfigWriter();
 
+    @Autowired
+    private CampaignLockManager lockManager;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Autowired
+    private StorageMetrics metrics;
+
     @Value("${config.storage.path}")
     private String basePath;
 
+    // Upper bound on the summed size of the cached .conf files
+    @Value("${config.cache.max-bytes:67108864}")
+    private long cacheMaxBytes;
+
+    // Threads used to parse configs for listings; 0 means one per CPU
+    @Value("${config.list.parallelism:0}")
+    private int listParallelism;
+
+    // Concurrent writes in a bulk update
+    @Value("${config.bulk.parallelism:8}")
+    private int bulkParallelism;
+
+    /**
+     * A parsed config and the file state it was parsed from.
+     */
+    private record CachedConfig(ConfigView view, long lastModified, long size) {
+
+        boolean matches(BasicFileAttributes attrs) {
+            return attrs.lastModifiedTime().toMillis() == lastModified && attrs.size() == size;
+        }
+    }
+
+    private Cache<String, CachedConfig> cache;
+    private DirectoryWatcher watcher;
+
+    private Timer readTimer;
+    private Timer parseTimer;
+    private Timer renderTimer;
+    private Timer writeTimer;
+
+    // Bumped on every invalidation so a parse racing with a change is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Own pools, never the MVC async executor: listing and bulk-update bodies
+    // run there and block on these tasks, so sharing it could deadlock
+    private ExecutorService listExecutor;
+    private ExecutorService bulkExecutor;
+
+    @PostConstruct
+    void start() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                .weigher((String campId, CachedConfig entry) -> (int) Math.min(Integer.MAX_VALUE, entry.size()))
+                .recordStats()
+                .build();
+        watcher = new DirectoryWatcher(Paths.get(basePath), false, this::onFileChanged);
+        watcher.start("config-watcher");
+
+        readTimer = metrics.timer(StorageMetrics.CONFIG, "read");
+        parseTimer = metrics.timer(StorageMetrics.CONFIG, "parse");
+        renderTimer = metrics.timer(StorageMetrics.CONFIG, "render");
+        writeTimer = metrics.timer(StorageMetrics.CONFIG, "write");
+
+        if (listParallelism <= 0) {
+            listParallelism = Runtime.getRuntime().availableProcessors();
+        }
+        listExecutor = newPool("config-list-", listParallelism);
+        bulkParallelism = Math.max(1, bulkParallelism);
+        bulkExecutor = newPool("config-bulk-", bulkParallelism);
+    }
+
+    @PreDestroy
+    void stop() {
+        watcher.close();
+        listExecutor.shutdownNow();
+        bulkExecutor.shutdownNow();
+    }
+
+    private static ExecutorService newPool(String namePrefix, int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     private Path resolveFile(String campId) {
-        return Paths.get(basePath, campId + ".conf");
+        return Paths.get(basePath, campId + CONFIG_SUFFIX);
     }
 
+    /**
+     * Returns the parsed config. While the directory watcher is running, cached
+     * entries are served without touching the disk; otherwise each hit is
+     * checked against the file's mtime and size.
+     */
     public ConfigView getConfig(String campId) throws IOException {
-        Path file = resolveFile(campId);
-        if (!Files.exists(file)) {
-            throw new IOException("Config file not found for campId: " + campId);
+        CachedConfig cached = cache.getIfPresent(campId);
+        if (cached != null && watcher.isActive()) {
+            return cached.view();
         }
-        return parser.parse(file, campId);
+        return load(campId, cached).view();
     }
 
-    public ConfigView updateConfig(String campId, ConfigUpdateRequest req) throws IOException {
-        Path file = resolveFile(campId);
-        if (!Files.exists(file)) {
-            throw new IOException("Config file not found for campId: " + campId);
+    /**
+     * Overlays the non-null fields of req onto the stored config. When ifMatch is
+     * given, the write only happens if it still matches the stored content;
+     * the compare and the write run under the campaign's lock, nothing is held
+     * while the client edits.
+     *
+     * @throws PreconditionFailedException if ifMatch no longer matches
+     */
+    public ConfigView updateConfig(String campId, ConfigUpdateRequest req, String ifMatch) throws IOException {
+        Lock lock = lockManager.lockFor(campId);
+        lock.lock();
+        try {
+            return compareAndUpdate(campId, req, ifMatch);
+        } finally {
+            lock.unlock();
         }
+    }
 
-        ConfigView current = parser.parse(file, campId);
+    private ConfigView compareAndUpdate(String campId, ConfigUpdateRequest req, String ifMatch) throws IOException {
+        Path file = resolveFile(campId);
+
+        // Always checked against the file, never trusted blindly, since it is about to be rewritten
+        ConfigView current = copyOf(load(campId, cache.getIfPresent(campId)).view());
+        if (!ETags.matches(ifMatch, current.getContentHash())) {
+            throw new PreconditionFailedException("Config for campId " + campId + " was modified by someone else",
+                    current.getContentHash());
+        }
 
         // Overlay updates: if field != null, replace
         if (req.getMetadataColumns() != null) {
@@ -60,8 +215,279 @@ public class ConfigService {
             current.setNamespaceConstant(req.getNamespaceConstant());
         }
 
-        writer.write(file, current);
+        byte[] content = renderTimer.record(() -> writer.render(current));
+        Timer.Sample write = Timer.start();
+        try {
+            AtomicFiles.write(file, content);
+        } finally {
+            invalidate(campId);
+        }
+        write.stop(writeTimer);
+        metrics.bytesWritten(StorageMetrics.CONFIG, campId, content.length);
+        current.setContentHash(Hashing.sha256Hex(content));
+        current.setLastModified(Files.getLastModifiedTime(file).toInstant().toString());
         return current;
     }
-}
 
+    /**
+     * One page of a config listing: campIds in name order, and the cursor for
+     * the next page (null on the last one).
+     */
+    public record ConfigPage(List<String> campIds, String nextAfter) {
+    }
+
+    /**
+     * Lists the campIds matching the query, sorted by name. Only directory
+     * entries (plus a stat per file when modifiedSince is set) are read; no
+     * config is parsed.
+     */
+    public ConfigPage listConfigs(ConfigListQuery query) throws IOException {
+        List<String> campIds = new ArrayList<>();
+        Path dir = Paths.get(basePath);
+        if (!Files.isDirectory(dir)) {
+            return new ConfigPage(campIds, null);
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + CONFIG_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                String campId = name.substring(0, name.length() - CONFIG_SUFFIX.length());
+                if (query.getPrefix() != null && !campId.startsWith(query.getPrefix())) {
+                    continue;
+                }
+                if (query.getAfter() != null && campId.compareTo(query.getAfter()) <= 0) {
+                    continue;
+                }
+                if (query.getModifiedSince() != null && !modifiedSince(file, query.getModifiedSince())) {
+                    continue;
+                }
+                campIds.add(campId);
+            }
+        }
+        Collections.sort(campIds);
+        if (campIds.size() <= query.getLimit()) {
+            return new ConfigPage(campIds, null);
+        }
+        List<String> page = new ArrayList<>(campIds.subList(0, query.getLimit()));
+        return new ConfigPage(page, page.get(page.size() - 1));
+    }
+
+    /**
+     * Parses the given configs in parallel and hands each one to the consumer,
+     * on the calling thread, as soon as it is ready; results therefore arrive
+     * in completion order. At most a small window of parses is in flight, so a
+     * slow consumer does not make results pile up. Configs that vanished since
+     * listing are skipped.
+     */
+    public void forEachConfig(List<String> campIds, Consumer<ConfigView> consumer) throws InterruptedException {
+        forEachParallel(listExecutor, listParallelism, campIds, this::getConfigOrNull, view -> {
+            if (view != null) {
+                consumer.accept(view);
+            }
+        });
+    }
+
+    /**
+     * Applies the same overlay to many configs, with at most
+     * config.bulk.parallelism writes in flight. Each campaign is updated under
+     * its own lock exactly like {@link #updateConfig}, so every file is either
+     * fully rewritten or left alone; there is no atomicity across campaigns.
+     * One result per campId is handed to the consumer on the calling thread,
+     * in completion order. If this is interrupted, campaigns not yet started
+     * are left alone, and the results of those already being written are
+     * still handed over before it throws, so the consumer has seen every
+     * update that was made.
+     */
+    public void bulkUpdate(List<String> campIds, ConfigUpdateRequest req, Map<String, String> ifMatch,
+            Consumer<BulkConfigUpdateResult> consumer) throws InterruptedException {
+        forEachParallel(bulkExecutor, bulkParallelism, campIds,
+                campId -> tryUpdate(campId, req, ifMatch != null ? ifMatch.get(campId) : null), consumer);
+    }
+
+    private BulkConfigUpdateResult tryUpdate(String campId, ConfigUpdateRequest req, String ifMatch) {
+        BulkConfigUpdateResult result = new BulkConfigUpdateResult();
+        result.setCampId(campId);
+        try {
+            result.setContentHash(updateConfig(campId, req, ifMatch).getContentHash());
+            result.setStatus(BulkConfigUpdateResult.UPDATED);
+        } catch (PreconditionFailedException e) {
+            result.setStatus(BulkConfigUpdateResult.PRECONDITION_FAILED);
+            result.setContentHash(e.getCurrentHash());
+            result.setError(e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            result.setStatus(BulkConfigUpdateResult.FAILED);
+            result.setError(e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Runs task for each campId on the executor and hands the non-null results
+     * to the consumer on the calling thread. When this stops early (interrupted,
+     * or a task or the consumer throws), queued tasks are skipped and running
+     * ones waited for, so nothing is still running once it returns; their
+     * results still reach the consumer unless it was the consumer that threw.
+     */
+    private static <T> void forEachParallel(ExecutorService executor, int parallelism, List<String> campIds,
+            Function<String, T> task, Consumer<T> consumer) throws InterruptedException {
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        AtomicBoolean stopped = new AtomicBoolean();
+        int window = parallelism * 4;
+        int submitted = 0;
+        int completed = 0;
+        boolean consuming = false;
+        try {
+            while (completed < campIds.size()) {
+                while (submitted < campIds.size() && submitted - completed < window) {
+                    String campId = campIds.get(submitted++);
+                    completion.submit(() -> stopped.get() ? null : task.apply(campId));
+                }
+                Future<T> future = completion.take();
+                completed++;
+                T result;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                if (result != null) {
+                    consuming = true;
+                    consumer.accept(result);
+                    consuming = false;
+                }
+            }
+        } finally {
+            if (completed < submitted) {
+                stopped.set(true);
+                awaitRemaining(completion, submitted - completed, consuming ? null : consumer);
+            }
+        }
+    }
+
+    private static <T> void awaitRemaining(CompletionService<T> completion, int remaining, Consumer<T> consumer) {
+        boolean interrupted = false;
+        while (remaining > 0) {
+            try {
+                Future<T> future = completion.take();
+                remaining--;
+                T result = future.get();
+                if (result != null && consumer != null) {
+                    consumer.accept(result);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException | RuntimeException e) {
+                // Already failing; the first error is the one reported
+                consumer = null;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ConfigView getConfigOrNull(String campId) {
+        try {
+            return getConfig(campId);
+        } catch (IOException e) {
+            logger.debug("Skipping config {} in listing: {}", campId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean modifiedSince(Path file, Instant since) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isAfter(since);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hit/miss counters and current footprint of the parsed config cache.
+     */
+    public Map<String, Object> cacheStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("entries", cache.estimatedSize());
+        result.put("weightBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L));
+        result.put("maxWeightBytes", cacheMaxBytes);
+        result.put("watching", isWatching());
+        return result;
+    }
+
+    private CachedConfig load(String campId, CachedConfig cached) throws IOException {
+        Path file = resolveFile(campId);
+        long generation = invalidations.get();
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            cache.invalidate(campId);
+            throw new IOException("Config file not found for campId: " + campId);
+        }
+        if (cached != null && cached.matches(attrs)) {
+            return cached;
+        }
+
+        Timer.Sample read = Timer.start();
+        byte[] content = Files.readAllBytes(file);
+        read.stop(readTimer);
+        metrics.bytesRead(StorageMetrics.CONFIG, campId, content.length);
+        ConfigView view = parseTimer.record(() -> parser.parse(content, campId));
+        view.setContentHash(Hashing.sha256Hex(content));
+        view.setLastModified(attrs.lastModifiedTime().toInstant().toString());
+
+        CachedConfig loaded = new CachedConfig(view, attrs.lastModifiedTime().toMillis(), content.length);
+        if (invalidations.get() == generation) {
+            cache.put(campId, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Whether on-disk edits are being picked up as they happen. When false,
+     * {@link ConfigChangedEvent}s only cover writes made through this service.
+     */
+    public boolean isWatching() {
+        return watcher.isActive();
+    }
+
+    private void onFileChanged(Path path) {
+        if (path == null) {
+            invalidations.incrementAndGet();
+            cache.invalidateAll();
+            events.publishEvent(new ConfigChangedEvent(null));
+            return;
+        }
+        String name = path.getFileName().toString();
+        if (name.endsWith(CONFIG_SUFFIX)) {
+            invalidate(name.substring(0, name.length() - CONFIG_SUFFIX.length()));
+        }
+    }
+
+    private void invalidate(String campId) {
+        invalidations.incrementAndGet();
+        cache.invalidate(campId);
+        events.publishEvent(new ConfigChangedEvent(campId));
+    }
+
+    // Cached views are shared between requests, so updates work on a copy
+    private static ConfigView copyOf(ConfigView source) {
+        ConfigView copy = new ConfigView();
+        copy.setCampId(source.getCampId());
+        copy.setConstantCampId(source.getConstantCampId());
+        copy.setMetadataColumns(new ArrayList<>(source.getMetadataColumns()));
+        copy.setTemplatePath(source.getTemplatePath());
+        copy.setMsgHeaders(new LinkedHashMap<>(source.getMsgHeaders()));
+        copy.setAttachmentDir(source.getAttachmentDir());
+        copy.setNamespaceConstant(source.getNamespaceConstant());
+        copy.setContentHash(source.getContentHash());
+        copy.setLastModified(source.getLastModified());
+        return copy;
+    }
+}
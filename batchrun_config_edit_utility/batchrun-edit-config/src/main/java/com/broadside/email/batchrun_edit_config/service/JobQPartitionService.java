@@ -0,0 +1,144 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.broadside.email.batchrun_edit_config.dao.JobQSchemaDao;
+
+/**
+ * Keeps the jobq table partitioned by day: creates the schema, pre-creates
+ * upcoming daily partitions, and drops or archives partitions older than the
+ * retention period. Insert and update cost therefore stays flat no matter how
+ * much history has accumulated.
+ */
+@Service
+public class JobQPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQPartitionService.class);
+
+    private static final DateTimeFormatter PARTITION_DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern PARTITION_NAME = Pattern.compile("jobq_p(\\d{8})");
+
+    @Autowired
+    private JobQSchemaDao schemaDao;
+
+    @Value("${jobq.schema.manage:true}")
+    private boolean manageSchema;
+
+    @Value("${jobq.schema.migrate-legacy:true}")
+    private boolean migrateLegacy;
+
+    @Value("${jobq.partition.precreate-days:7}")
+    private int precreateDays;
+
+    @Value("${jobq.retention.days:90}")
+    private int retentionDays;
+
+    // drop: delete expired partitions; archive: detach and rename to jobq_archive_yyyyMMdd
+    @Value("${jobq.retention.mode:drop}")
+    private String retentionMode;
+
+    private volatile boolean ready;
+
+    /**
+     * Makes sure the schema and today's partitions exist. Called by the jobq
+     * writer before its first write so rows never land in the default partition.
+     */
+    public synchronized void ensureReady() throws SQLException {
+        if (!manageSchema || ready) {
+            return;
+        }
+        schemaDao.ensureSchema(migrateLegacy, JobQPartitionService::partitionName);
+        createUpcomingPartitions();
+        ready = true;
+    }
+
+    @Scheduled(initialDelayString = "${jobq.partition.initial-delay-ms:5000}",
+            fixedDelayString = "${jobq.partition.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        if (!manageSchema) {
+            return;
+        }
+        try {
+            ensureReady();
+        } catch (Exception e) {
+            logger.warn("jobq schema setup failed: {}", e.getMessage());
+            return;
+        }
+        createUpcomingPartitions();
+        // Retention runs even when a partition could not be created
+        try {
+            pruneExpiredPartitions();
+        } catch (Exception e) {
+            logger.warn("jobq partition retention failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Creates yesterday's through the last pre-created day's partitions. A
+     * day that fails is logged and retried on the next run without holding
+     * up the others.
+     */
+    private void createUpcomingPartitions() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        for (int i = -1; i <= precreateDays; i++) {
+            LocalDate day = today.plusDays(i);
+            try {
+                schemaDao.createPartition(partitionName(day), day);
+            } catch (SQLException e) {
+                logger.warn("Could not create jobq partition {}: {}", partitionName(day), e.getMessage());
+            }
+        }
+    }
+
+    private void pruneExpiredPartitions() throws SQLException {
+        LocalDate cutoff = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+        boolean archive = "archive".equalsIgnoreCase(retentionMode);
+
+        for (String name : schemaDao.listPartitions()) {
+            Matcher m = PARTITION_NAME.matcher(name);
+            if (!m.matches()) {
+                continue;
+            }
+            LocalDate day = LocalDate.parse(m.group(1), PARTITION_DAY);
+            if (!day.isBefore(cutoff)) {
+                continue;
+            }
+            if (archive) {
+                schemaDao.archivePartition(name, "jobq_archive_" + m.group(1));
+                logger.info("Archived expired jobq partition {}", name);
+            } else {
+                schemaDao.dropPartition(name);
+                logger.info("Dropped expired jobq partition {}", name);
+            }
+        }
+
+        int expired = schemaDao.pruneDefault(cutoff, archive ? "jobq_archive_default" : null);
+        if (expired > 0) {
+            logger.info("{} {} expired jobq rows from jobq_default", archive ? "Archived" : "Deleted", expired);
+        }
+
+        // Archived partitions still reference their payloads, so only drop mode cleans them up
+        if (!archive) {
+            int removed = schemaDao.deletePayloadsNotSeenSince(cutoff);
+            if (removed > 0) {
+                logger.info("Deleted {} jobq payloads not referenced since {}", removed, cutoff);
+            }
+        }
+    }
+
+    private static String partitionName(LocalDate day) {
+        return "jobq_p" + day.format(PARTITION_DAY);
+    }
+}
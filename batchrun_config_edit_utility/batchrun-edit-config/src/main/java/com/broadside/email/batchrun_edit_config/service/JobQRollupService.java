@@ -0,0 +1,122 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.broadside.email.batchrun_edit_config.dao.JobQRollupDao;
+import com.broadside.email.batchrun_edit_config.model.LatencyRollup;
+import com.broadside.email.batchrun_edit_config.utils.LatencySketch;
+
+/**
+ * Maintains per-minute and per-hour latency rollups of jobq (count, error
+ * rate, p50/p95/p99) so dashboards never scan raw jobq rows.
+ */
+@Service
+public class JobQRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQRollupService.class);
+
+    @Autowired
+    private JobQRollupDao rollupDao;
+
+    @Autowired
+    private JobQPartitionService partitionService;
+
+    @Value("${jobq.rollup.enabled:true}")
+    private boolean enabled;
+
+    // Rows written within the lag are left for the next run, so in-flight jobq transactions are not missed
+    @Value("${jobq.rollup.lag-seconds:30}")
+    private long lagSeconds;
+
+    // On the very first run, how much existing history to fold in
+    @Value("${jobq.rollup.backfill-minutes:60}")
+    private long backfillMinutes;
+
+    @Value("${jobq.rollup.minute-retention-days:7}")
+    private int minuteRetentionDays;
+
+    @Value("${jobq.rollup.hour-retention-days:400}")
+    private int hourRetentionDays;
+
+    @Scheduled(initialDelayString = "${jobq.rollup.initial-delay-ms:15000}",
+            fixedDelayString = "${jobq.rollup.interval-ms:60000}")
+    public void rollup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            partitionService.ensureReady();
+            Instant now = Instant.now();
+            int rows = rollupDao.rollup(Duration.ofMinutes(backfillMinutes), Duration.ofSeconds(lagSeconds));
+            if (rows > 0) {
+                logger.debug("Folded {} jobq rows into latency rollups", rows);
+            }
+            rollupDao.deleteRollupsBefore(JobQRollupDao.MINUTE, now.minus(Duration.ofDays(minuteRetentionDays)));
+            rollupDao.deleteRollupsBefore(JobQRollupDao.HOUR, now.minus(Duration.ofDays(hourRetentionDays)));
+        } catch (Exception e) {
+            logger.warn("jobq latency rollup failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns rollup buckets in [from, to). With byStatus false, the statuses of
+     * each jobtype/mode bucket are merged, which makes errorRate meaningful.
+     */
+    public List<LatencyRollup> query(String granularity, Instant from, Instant to, String jobType, String mode,
+            String status, boolean byStatus) throws SQLException {
+        List<LatencyRollup> rollups = rollupDao.findRollups(granularity, from, to, jobType, mode, status);
+        if (!byStatus) {
+            rollups = mergeStatuses(rollups);
+        }
+        for (LatencyRollup rollup : rollups) {
+            summarize(rollup);
+        }
+        return rollups;
+    }
+
+    private List<LatencyRollup> mergeStatuses(List<LatencyRollup> rollups) {
+        Map<String, LatencyRollup> merged = new LinkedHashMap<>();
+        for (LatencyRollup rollup : rollups) {
+            String key = rollup.getBucketStart() + "|" + rollup.getJobType() + "|" + rollup.getMode();
+            LatencyRollup target = merged.get(key);
+            if (target == null) {
+                target = new LatencyRollup();
+                target.setGranularity(rollup.getGranularity());
+                target.setBucketStart(rollup.getBucketStart());
+                target.setJobType(rollup.getJobType());
+                target.setMode(rollup.getMode());
+                target.setSketch(new LatencySketch());
+                merged.put(key, target);
+            }
+            target.setCount(target.getCount() + rollup.getCount());
+            target.setErrorCount(target.getErrorCount() + rollup.getErrorCount());
+            target.setSumMs(target.getSumMs() + rollup.getSumMs());
+            target.setMaxMs(Math.max(target.getMaxMs(), rollup.getMaxMs()));
+            target.getSketch().merge(rollup.getSketch());
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private void summarize(LatencyRollup rollup) {
+        long count = rollup.getCount();
+        rollup.setErrorRate(count > 0 ? (double) rollup.getErrorCount() / count : 0);
+        rollup.setAvgMs(count > 0 ? rollup.getSumMs() / count : 0);
+        LatencySketch sketch = rollup.getSketch();
+        rollup.setP50Ms(sketch.quantile(0.50));
+        rollup.setP95Ms(sketch.quantile(0.95));
+        rollup.setP99Ms(sketch.quantile(0.99));
+    }
+}
@@ -1,41 +1,319 @@
 package com.broadside.email.batchrun_edit_config.service;
 
+import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.broadside.email.batchrun_edit_config.dao.JobQDao;
+import com.broadside.email.batchrun_edit_config.model.JobQEvent;
+import com.broadside.email.batchrun_edit_config.model.JobQQuery;
+import com.broadside.email.batchrun_edit_config.model.JobQRecord;
+import com.broadside.email.batchrun_edit_config.utils.Hashing;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class JobQService {
 
+    private static final Logger logger = LoggerFactory.getLogger(JobQService.class);
+
+    private static final long DRAIN_TIMEOUT_MS = 10_000;
+
+    @Autowired
+    private JobQWriter jobQWriter;
+
     @Autowired
     private JobQDao jobQDao;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // When false, jobs are still timed but nothing is written to jobq (load tests without a database)
+    @Value("${jobq.audit.enabled:true}")
+    private boolean auditEnabled;
+
+    // String fields at least this long are stored in jobq_payload by reference
+    @Value("${jobq.payload.min-length:1024}")
+    private int payloadMinLength;
+
+    // Bodies waiting to be serialized beyond this are serialized on the request thread
+    @Value("${jobq.audit.max-pending:1000}")
+    private int maxPending;
+
+    // Threads serializing and hashing audit bodies off the request thread
+    @Value("${jobq.audit.threads:2}")
+    private int auditThreads;
+
+    // Upper bound on reading one page of GET /jobq history
+    @Value("${jobq.history.query-timeout-seconds:30}")
+    private int historyTimeoutSeconds;
+
     private final ObjectMapper mapper = new ObjectMapper();
 
-    public int start(String jobType, String mode, Object requestBody) {
+    // Each open job's start time, so its END can target the right partition, its
+    // START hand-off, which its END waits for, and what its duration is tagged with
+    private final Map<String, OpenJob> openJobs = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // Own pool rather than Boot's task executor, which also runs streaming
+    // response bodies; FIFO, so a job's START is always picked up before its END
+    private ThreadPoolExecutor auditExecutor;
+
+    private record OpenJob(Instant startTime, CompletableFuture<Void> started, String jobType, String mode,
+            long startNanos) {
+    }
+
+    @PostConstruct
+    void init() {
+        int threads = Math.max(1, auditThreads);
+        AtomicInteger threadCount = new AtomicInteger();
+        auditExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxPending)), runnable -> {
+                    Thread thread = new Thread(runnable, "jobq-audit-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        meterRegistry.gauge("batchrun.jobq.audit.pending", pending);
+    }
+
+    /**
+     * Records the start of a job and returns its id (the jobq uuid). The body is
+     * serialized and the row written asynchronously, so this never waits on
+     * either.
+     */
+    public String start(String jobType, String mode, String campId, Object requestBody) {
         try {
             String uuid = UUID.randomUUID().toString();
-            String requestJson = mapper.writeValueAsString(requestBody);
-            return jobQDao.insertStart(jobType, mode, requestJson, uuid);
+            if (!auditEnabled) {
+                openJobs.put(uuid, new OpenJob(null, null, jobType, mode, System.nanoTime()));
+                return uuid;
+            }
+            JobQEvent event = JobQEvent.start(uuid, jobType, mode, campId, null);
+            CompletableFuture<Void> started = new CompletableFuture<>();
+            openJobs.put(uuid, new OpenJob(event.getTime(), started, jobType, mode, System.nanoTime()));
+            submit(event, requestBody, started, null);
+            return uuid;
         } catch (Exception e) {
             e.printStackTrace();
-            return 0;
+            return null;
         }
     }
 
-    public void end(int id, Object responseBody, String status) {
-        if (id == 0) return;
+    public void end(String jobId, Object responseBody, String status) {
+        if (jobId == null) return;
 
+        OpenJob job = openJobs.remove(jobId);
+        if (job != null) {
+            // Every endpoint runs between start and end, so this is its latency by job type, mode and outcome
+            meterRegistry.timer("batchrun.job", "jobtype", job.jobType(), "mode", job.mode(), "status", status)
+                    .record(System.nanoTime() - job.startNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (!auditEnabled) return;
         try {
-            String responseJson = mapper.writeValueAsString(responseBody);
-            jobQDao.updateEnd(id, responseJson, status);
+            JobQEvent event = JobQEvent.end(jobId, job == null ? null : job.startTime(), null, status);
+            submit(event, responseBody, null, job == null ? null : job.started());
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Fills in the event's body and hands it to the writer on the audit
+     * executor, after the previous event of the job (if any) has been handed
+     * over. Runs on the calling thread instead when too many are pending or the
+     * executor refuses, so a burst slows requests down rather than piling up.
+     */
+    private void submit(JobQEvent event, Object body, CompletableFuture<Void> done, CompletableFuture<Void> after) {
+        Runnable task = () -> {
+            try {
+                if (after != null) {
+                    after.join();
+                }
+                Map<String, String> payloads = new HashMap<>();
+                String json = toAuditJson(body, payloads);
+                if (event.getType() == JobQEvent.Type.START) {
+                    event.setRequest(json);
+                } else {
+                    event.setResponse(json);
+                }
+                event.setPayloads(payloads.isEmpty() ? null : payloads);
+                jobQWriter.submit(event);
+            } catch (Exception e) {
+                logger.warn("Could not audit {} of job {}: {}", event.getType(), event.getUuid(), e.toString());
+            } finally {
+                if (done != null) {
+                    done.complete(null);
+                }
+            }
+        };
+
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            task.run();
+            return;
+        }
+        try {
+            auditExecutor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            task.run();
+        }
+    }
+
+    /**
+     * Gives bodies still being serialized a chance to reach the writer, which
+     * spools what it cannot insert before shutting down.
+     */
+    @PreDestroy
+    public void drain() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while (pending.get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        if (pending.get() > 0) {
+            logger.warn("{} jobq events were not audited before shutdown", pending.get());
+        }
+        auditExecutor.shutdownNow();
+    }
+
+    /**
+     * Serializes a request/response body, replacing every large string field
+     * with {"$payload": sha256, "length": n}. Content not yet stored is added to
+     * payloads so the writer can persist it once. Package-private for the
+     * benchmarks.
+     */
+    String toAuditJson(Object body, Map<String, String> payloads) {
+        JsonNode tree = mapper.valueToTree(body);
+        return mapper.writeValueAsString(extractPayloads(tree, payloads));
+    }
+
+    private JsonNode extractPayloads(JsonNode node, Map<String, String> payloads) {
+        if (node == null) {
+            return null;
+        }
+        if (node.isString()) {
+            String value = node.stringValue();
+            return value.length() >= payloadMinLength ? payloadRef(value, payloads) : node;
+        }
+        if (node.isObject()) {
+            ObjectNode object = (ObjectNode) node;
+            for (String name : new ArrayList<>(object.propertyNames())) {
+                object.replace(name, extractPayloads(object.get(name), payloads));
+            }
+        } else if (node.isArray()) {
+            ArrayNode array = (ArrayNode) node;
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, extractPayloads(array.get(i), payloads));
+            }
+        }
+        return node;
+    }
+
+    private JsonNode payloadRef(String content, Map<String, String> payloads) {
+        String hash = Hashing.sha256Hex(content);
+        if (!jobQWriter.isPayloadStored(hash)) {
+            payloads.put(hash, content);
+        }
+        ObjectNode ref = mapper.createObjectNode();
+        ref.put("$payload", hash);
+        ref.put("length", content.length());
+        return ref;
+    }
+
+    /**
+     * One page of matching jobq rows, newest first. Each record carries the
+     * cursor for the page that follows it. The page is read in full before it
+     * is returned, so the database connection is never held while a client
+     * reads the response.
+     */
+    public List<JobQRecord> history(JobQQuery query) throws Exception {
+        List<JobQRecord> page = new ArrayList<>(Math.min(query.getLimit(), 1000));
+        jobQDao.readHistory(query, historyTimeoutSeconds, (record, request, response) -> {
+            record.setRequest(parseStored(request));
+            record.setResponse(parseStored(response));
+            if (record.getEndTime() != null) {
+                record.setDurationMs(Duration.between(record.getStartTime(), record.getEndTime()).toMillis());
+            }
+            record.setCursor(encodeCursor(record.getStartTime(), record.getId()));
+            page.add(record);
+        });
+        return page;
+    }
+
+    /**
+     * Returns the content stored for a payload reference, or null.
+     */
+    public byte[] payload(String hash) throws Exception {
+        return jobQDao.findPayload(hash);
+    }
+
+    /**
+     * Cursor format: "<starttime epoch micros>_<id>".
+     */
+    public static String encodeCursor(Instant startTime, long id) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, startTime) + "_" + id;
+    }
+
+    /**
+     * Applies an "after" cursor to the query.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static void applyCursor(JobQQuery query, String cursor) {
+        int sep = cursor.indexOf('_');
+        if (sep <= 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        try {
+            long micros = Long.parseLong(cursor.substring(0, sep));
+            query.setAfterStartTime(Instant.EPOCH.plus(micros, ChronoUnit.MICROS));
+            query.setAfterId(Long.parseLong(cursor.substring(sep + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private JsonNode parseStored(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return mapper.readTree(json);
+        } catch (Exception e) {
+            // Rows written by older versions may not be JSON
+            return mapper.getNodeFactory().stringNode(json);
+        }
+    }
 }
@@ -0,0 +1,342 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.broadside.email.batchrun_edit_config.dao.JobQDao;
+import com.broadside.email.batchrun_edit_config.model.JobQEvent;
+import com.broadside.email.batchrun_edit_config.utils.JobQSpool;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Background writer that moves jobq audit records off the request path.
+ * Request threads only enqueue; a single daemon thread flushes the queue to
+ * Postgres in batches. When the database is slow or down, or the queue is full,
+ * events are appended to a local spool and replayed in order once it recovers.
+ * Only that thread touches the spool, and it takes events in the order they
+ * were submitted, so a job's END never reaches the spool ahead of its START.
+ * Events the database rejects for good are dead-lettered rather than retried.
+ */
+@Service
+public class JobQWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQWriter.class);
+
+    @Autowired
+    private JobQDao jobQDao;
+
+    @Autowired
+    private JobQPartitionService partitionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jobq.writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${jobq.writer.batch-size:500}")
+    private int batchSize;
+
+    @Value("${jobq.writer.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${jobq.writer.query-timeout-seconds:5}")
+    private int queryTimeoutSeconds;
+
+    @Value("${jobq.writer.retry-interval-ms:10000}")
+    private long retryIntervalMs;
+
+    @Value("${jobq.writer.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    @Value("${jobq.payload.cache-size:10000}")
+    private int storedPayloadCacheSize;
+
+    @Value("${jobq.spool.path}")
+    private String spoolPath;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private BlockingQueue<JobQEvent> queue;
+    // Events submitted while the queue is full, or while earlier ones are still here
+    private final BlockingQueue<JobQEvent> overflow = new LinkedBlockingQueue<>();
+    private JobQSpool spool;
+    private Counter deadLetters;
+    private Thread worker;
+    private volatile boolean running;
+    // Set once shutdown gave up waiting: the worker spools what is left instead of writing it
+    private volatile boolean spoolOnly;
+    private long nextRetryAt;
+
+    // Hashes written (and so marked last_seen) today, so their content is not resent
+    private Map<String, LocalDate> storedPayloads;
+
+    @PostConstruct
+    void startWorker() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        meterRegistry.gauge("batchrun.jobq.writer.queue", queue, pending -> pending.size() + overflow.size());
+        deadLetters = meterRegistry.counter("batchrun.jobq.writer.dead_letters");
+        storedPayloads = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalDate> eldest) {
+                return size() > storedPayloadCacheSize;
+            }
+        });
+        spool = new JobQSpool(Paths.get(spoolPath), mapper);
+        running = true;
+        worker = new Thread(this::run, "jobq-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stopWorker() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (worker.isAlive()) {
+            // Still inside a database call, which the interrupt does not stop. The
+            // worker stays the only one touching the spool: it spools the rest
+            // itself, in order, once that call returns or times out.
+            spoolOnly = true;
+            logger.warn("jobq writer still busy after {} ms; it will spool the remaining events", shutdownTimeoutMs);
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(queryTimeoutSeconds) + flushIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        // The worker has exited; whatever it could not flush is kept for the next start
+        List<JobQEvent> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        overflow.drainTo(leftover);
+        spill(leftover);
+    }
+
+    /**
+     * Queues an event without blocking or touching the disk. Once the queue
+     * is full, events go to an overflow list behind it, which the worker moves
+     * to the spool as a whole before taking anything new.
+     */
+    public void submit(JobQEvent event) {
+        if (!overflow.isEmpty() || !queue.offer(event)) {
+            overflow.add(event);
+        }
+    }
+
+    /**
+     * True when the payload with this hash has already been written today, in
+     * which case callers only need to store the reference. Payloads are resent
+     * once a day so retention sees them as still referenced.
+     */
+    public boolean isPayloadStored(String hash) {
+        return LocalDate.now(ZoneOffset.UTC).equals(storedPayloads.get(hash));
+    }
+
+    private void run() {
+        List<JobQEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty() || !overflow.isEmpty()) {
+            try {
+                if (!overflow.isEmpty()) {
+                    spillBacklog(batch);
+                    batch.clear();
+                    continue;
+                }
+                JobQEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    flush(batch);
+                    batch.clear();
+                } else if (spool.hasPending() && !spoolOnly) {
+                    drainSpool();
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    // Shutting down: flush what is already queued, then exit
+                    queue.drainTo(batch);
+                    overflow.drainTo(batch);
+                    flush(batch);
+                    batch.clear();
+                }
+            } catch (Exception e) {
+                logger.error("jobq writer error: {}", e.getMessage(), e);
+                spill(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * The worker fell behind: everything queued, then everything in overflow,
+     * goes to the spool in one append, oldest first. Submits keep going to
+     * overflow until it is empty, so none can overtake what is moved here.
+     */
+    private void spillBacklog(List<JobQEvent> batch) {
+        queue.drainTo(batch);
+        while (overflow.drainTo(batch) > 0) {
+            // drain until submitters see it empty
+        }
+        logger.warn("jobq writer fell behind; spooling {} events", batch.size());
+        spill(batch);
+    }
+
+    private void flush(List<JobQEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        if (spoolOnly) {
+            spill(batch);
+            return;
+        }
+
+        // Keep ordering: while older events are still spooled, new ones queue behind them
+        if (spool.hasPending()) {
+            spill(batch);
+            drainSpool();
+            return;
+        }
+
+        if (!databaseAvailable()) {
+            spill(batch);
+            return;
+        }
+
+        try {
+            writeOrDeadLetter(batch);
+        } catch (Exception e) {
+            logger.warn("jobq batch of {} failed, spooling: {}", batch.size(), e.getMessage());
+            markDatabaseDown();
+            spill(batch);
+        }
+    }
+
+    private void drainSpool() {
+        if (!databaseAvailable()) {
+            return;
+        }
+        try {
+            if (spool.drain(batchSize, this::writeOrDeadLetter)) {
+                logger.info("jobq spool drained");
+            } else {
+                markDatabaseDown();
+            }
+        } catch (Exception e) {
+            logger.error("jobq spool drain failed: {}", e.getMessage());
+            markDatabaseDown();
+        }
+    }
+
+    /**
+     * Writes events, setting aside those the database rejects for good. If the
+     * batch is rejected for its data, its events are written one at a time,
+     * each removed from the list once written or dead-lettered; any other
+     * failure is thrown with the unwritten rest still in the list.
+     */
+    private void writeOrDeadLetter(List<JobQEvent> events) throws Exception {
+        try {
+            write(events);
+            return;
+        } catch (Exception e) {
+            if (!isRejected(e)) {
+                throw e;
+            }
+            logger.warn("jobq batch of {} rejected, writing events one by one: {}", events.size(), e.getMessage());
+        }
+        while (!events.isEmpty()) {
+            JobQEvent event = events.get(0);
+            try {
+                write(List.of(event));
+            } catch (Exception e) {
+                if (!isRejected(e)) {
+                    throw e;
+                }
+                logger.error("Dead-lettering jobq {} of job {}: {}", event.getType(), event.getUuid(), e.getMessage());
+                spool.deadLetter(List.of(event));
+                deadLetters.increment();
+            }
+            events.remove(0);
+        }
+    }
+
+    /**
+     * True for a data exception (SQLState class 22) or integrity constraint
+     * violation (23): the events themselves are bad and will fail again however
+     * often they are retried. Anything else (connection, timeout, a missing
+     * table or privilege) is about the database and is retried from the spool.
+     */
+    static boolean isRejected(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && sql.getSQLState() != null) {
+                String state = sql.getSQLState();
+                return state.startsWith("22") || state.startsWith("23");
+            }
+        }
+        return false;
+    }
+
+    private void write(List<JobQEvent> events) throws Exception {
+        partitionService.ensureReady();
+
+        for (JobQEvent event : events) {
+            if (event.getPayloads() != null) {
+                event.getPayloads().keySet().removeIf(this::isPayloadStored);
+            }
+        }
+
+        jobQDao.writeBatch(events, queryTimeoutSeconds);
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        for (JobQEvent event : events) {
+            if (event.getPayloads() != null) {
+                event.getPayloads().keySet().forEach(hash -> storedPayloads.put(hash, today));
+            }
+        }
+    }
+
+    private void spill(List<JobQEvent> events) {
+        try {
+            spool.append(events);
+        } catch (Exception e) {
+            logger.error("Dropping {} jobq events, spool write failed: {}", events.size(), e.getMessage());
+        }
+    }
+
+    private boolean databaseAvailable() {
+        return System.currentTimeMillis() >= nextRetryAt;
+    }
+
+    private void markDatabaseDown() {
+        nextRetryAt = System.currentTimeMillis() + retryIntervalMs;
+    }
+}
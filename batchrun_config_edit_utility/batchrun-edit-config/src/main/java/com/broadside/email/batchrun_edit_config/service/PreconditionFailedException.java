@@ -0,0 +1,22 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+/**
+ * Thrown when a write carries an If-Match that no longer matches the stored
+ * content, i.e. someone else changed it since the client read it.
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    private final String currentHash;
+
+    public PreconditionFailedException(String message, String currentHash) {
+        super(message);
+        this.currentHash = currentHash;
+    }
+
+    /**
+     * SHA-256 of the content currently stored, or null if there is none.
+     */
+    public String getCurrentHash() {
+        return currentHash;
+    }
+}
@@ -0,0 +1,449 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.broadside.email.batchrun_edit_config.model.TemplateBackup;
+import com.broadside.email.batchrun_edit_config.utils.AtomicFiles;
+import com.broadside.email.batchrun_edit_config.utils.BlobStore;
+import com.broadside.email.batchrun_edit_config.utils.CampaignLockManager;
+import com.broadside.email.batchrun_edit_config.utils.Hashing;
+
+import jakarta.annotation.PostConstruct;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Template backups. Content goes into a {@link BlobStore} shared by all
+ * campaigns, so a version that is already stored (the same template saved
+ * twice, or a template several campaigns share) costs no further I/O or disk,
+ * and everything is stored gzipped. Each campaign has a manifest listing its
+ * backups, oldest first, which is trimmed to the retention policy on every
+ * backup and by a periodic sweep that also deletes blobs no manifest uses.
+ *
+ * The manifests form a backup catalog that is also held in memory, loaded
+ * per campaign on first use, so listing backups or checking for them never
+ * scans a directory. Manifests and catalog entries are only changed under the
+ * campaign's lock. Files in a campaign's legacy backups/ directory are only
+ * brought into the store on request, by {@link #migrateLegacy(String)} or at
+ * startup when templ.backup.migrate-legacy is set, never by a read; the files
+ * themselves are kept unless a retention policy is configured.
+ */
+@Service
+public class TemplateBackupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateBackupService.class);
+
+    private static final DateTimeFormatter BACKUP_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    // "welcome-email_20251202_142530.html", as the legacy backups were named
+    private static final Pattern LEGACY_NAME = Pattern.compile("(.+)_\\d{8}_\\d{6}(?:-\\d+)?(\\.html)");
+    private static final String MANIFEST_SUFFIX = ".json";
+    private static final String LEGACY_BACKUP_DIR = "backups";
+
+    // Unreferenced blobs younger than this are kept; covers a backup between storing its blob and its manifest
+    private static final Duration BLOB_GRACE = Duration.ofHours(1);
+
+    @Autowired
+    private CampaignLockManager lockManager;
+
+    @Value("${templ.storage.path}")
+    private String templBasePath;
+
+    @Value("${templ.blobstore.path}")
+    private String storePath;
+
+    // 0 = no limit
+    @Value("${templ.backup.retention.max-count:0}")
+    private int maxCount;
+
+    // 0 = no limit
+    @Value("${templ.backup.retention.max-age-days:0}")
+    private int maxAgeDays;
+
+    @Value("${templ.backup.migrate-legacy:false}")
+    private boolean migrateLegacy;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private BlobStore blobs;
+    private Path manifestDir;
+
+    // campId -> its backups, oldest first; replaced whole on every change
+    private final Map<String, List<TemplateBackup>> catalog = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void start() {
+        blobs = new BlobStore(Paths.get(storePath, "blobs"));
+        manifestDir = Paths.get(storePath, "manifests");
+    }
+
+    public Path manifestFile(String campId) {
+        return manifestDir.resolve(campId + MANIFEST_SUFFIX);
+    }
+
+    /**
+     * Backs up the template file. contentHash, if known, is the hash of the
+     * file's current content; when the store already has it, nothing is read
+     * or written but the manifest. Must be called under the campaign lock.
+     */
+    public TemplateBackup backup(String campId, Path templateFile, String contentHash) throws IOException {
+        List<TemplateBackup> backups = new ArrayList<>(backupsOf(campId));
+
+        long size;
+        if (contentHash != null && blobs.touch(contentHash)) {
+            size = Files.size(templateFile);
+        } else {
+            byte[] content = Files.readAllBytes(templateFile);
+            contentHash = blobs.put(content);
+            size = content.length;
+        }
+
+        String sourceName = templateFile.getFileName().toString();
+        String baseName = sourceName.substring(0, sourceName.length() - ".html".length());
+        TemplateBackup backup = newBackup(
+                uniqueName(backups, baseName + "_" + LocalDateTime.now().format(BACKUP_TIMESTAMP_FORMAT)),
+                sourceName, Instant.now(), size, contentHash);
+        backups.add(backup);
+
+        applyRetention(backups);
+        saveManifest(campId, backups);
+
+        logger.info("Backed up template for campaign {} from {} as {}", campId, sourceName, backup.getName());
+        return backup;
+    }
+
+    /**
+     * The campaign's manifest if it lists any backups, else null.
+     */
+    public Path backupLocation(String campId) throws IOException {
+        return backupsOf(campId).isEmpty() ? null : manifestFile(campId);
+    }
+
+    /**
+     * The campaign's backups, newest first.
+     */
+    public List<TemplateBackup> listBackups(String campId) throws IOException {
+        List<TemplateBackup> newestFirst = new ArrayList<>(backupsOf(campId));
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    /**
+     * Returns the backup with that name, or null if the campaign has none.
+     */
+    public TemplateBackup findBackup(String campId, String name) throws IOException {
+        for (TemplateBackup backup : backupsOf(campId)) {
+            if (backup.getName().equals(name)) {
+                return backup;
+            }
+        }
+        return null;
+    }
+
+    public byte[] readBackup(TemplateBackup backup) throws IOException {
+        return blobs.get(backup.getContentHash());
+    }
+
+    /**
+     * Removes the campaign's backups beyond the newest keep and those older
+     * than olderThanDays (either may be null), and returns the removed ones.
+     * Their blobs are deleted by the next sweep unless still referenced.
+     */
+    public List<TemplateBackup> prune(String campId, Integer keep, Integer olderThanDays) throws IOException {
+        Lock lock = lockManager.lockFor(campId);
+        lock.lock();
+        try {
+            List<TemplateBackup> backups = new ArrayList<>(backupsOf(campId));
+            List<TemplateBackup> removed = new ArrayList<>();
+            if (olderThanDays != null) {
+                Instant cutoff = Instant.now().minus(Duration.ofDays(olderThanDays));
+                for (TemplateBackup backup : backups) {
+                    if (Instant.parse(backup.getCreatedAt()).isBefore(cutoff)) {
+                        removed.add(backup);
+                    }
+                }
+                backups.removeAll(removed);
+            }
+            if (keep != null && backups.size() > keep) {
+                List<TemplateBackup> oldest = backups.subList(0, backups.size() - keep);
+                removed.addAll(oldest);
+                oldest.clear();
+            }
+            if (!removed.isEmpty()) {
+                saveManifest(campId, backups);
+                logger.info("Pruned {} backups of campaign {}", removed.size(), campId);
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies the retention policy to every manifest, then deletes the blobs
+     * none of them references any more.
+     */
+    @Scheduled(initialDelayString = "${templ.blobstore.gc-interval-ms:3600000}",
+            fixedDelayString = "${templ.blobstore.gc-interval-ms:3600000}")
+    public void collectGarbage() {
+        try {
+            Set<String> referenced = new HashSet<>();
+            int expired = 0;
+            for (String campId : listManifests()) {
+                Lock lock = lockManager.lockFor(campId);
+                lock.lock();
+                try {
+                    List<TemplateBackup> backups = new ArrayList<>(backupsOf(campId));
+                    int before = backups.size();
+                    applyRetention(backups);
+                    if (backups.size() != before) {
+                        saveManifest(campId, backups);
+                        expired += before - backups.size();
+                    }
+                    backups.forEach(backup -> referenced.add(backup.getContentHash()));
+                } finally {
+                    lock.unlock();
+                }
+            }
+            int deleted = blobs.sweep(referenced, Instant.now().minus(BLOB_GRACE));
+            if (expired > 0 || deleted > 0) {
+                logger.info("Template backup sweep expired {} backups and deleted {} blobs", expired, deleted);
+            }
+        } catch (Exception e) {
+            logger.warn("Template backup sweep failed: {}", e.getMessage());
+        }
+    }
+
+    private void applyRetention(List<TemplateBackup> backups) {
+        if (maxAgeDays > 0) {
+            Instant cutoff = Instant.now().minus(Duration.ofDays(maxAgeDays));
+            backups.removeIf(backup -> Instant.parse(backup.getCreatedAt()).isBefore(cutoff));
+        }
+        if (maxCount > 0 && backups.size() > maxCount) {
+            backups.subList(0, backups.size() - maxCount).clear();
+        }
+    }
+
+    /**
+     * The campaign's catalog entry, loaded from its manifest on first use.
+     */
+    private List<TemplateBackup> backupsOf(String campId) throws IOException {
+        List<TemplateBackup> backups = catalog.get(campId);
+        if (backups != null) {
+            return backups;
+        }
+        Lock lock = lockManager.lockFor(campId);
+        lock.lock();
+        try {
+            backups = catalog.get(campId);
+            if (backups == null) {
+                backups = loadBackups(campId);
+                catalog.put(campId, backups);
+            }
+            return backups;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<TemplateBackup> loadBackups(String campId) throws IOException {
+        return List.copyOf(readManifest(campId));
+    }
+
+    // Under the campaign lock
+    private void saveManifest(String campId, List<TemplateBackup> backups) throws IOException {
+        writeManifest(campId, backups);
+        catalog.put(campId, List.copyOf(backups));
+    }
+
+    /**
+     * Stores the legacy backup files of the campaign and adds them to its
+     * manifest, and returns how many were added. A file already listed under
+     * its own name with the same content is skipped, so running this again is
+     * harmless. The files are deleted, once the manifest listing them is
+     * written, only if a retention policy is configured.
+     */
+    public int migrateLegacy(String campId) throws IOException {
+        Lock lock = lockManager.lockFor(campId);
+        lock.lock();
+        try {
+            List<Path> files = listLegacyBackups(legacyBackupDir(campId));
+            if (files.isEmpty()) {
+                return 0;
+            }
+            List<TemplateBackup> backups = new ArrayList<>(backupsOf(campId));
+            int added = 0;
+            for (Path file : files) {
+                byte[] content = Files.readAllBytes(file);
+                String name = file.getFileName().toString();
+                String contentHash = Hashing.sha256Hex(content);
+                if (backups.stream().anyMatch(backup -> backup.getName().equals(name)
+                        && backup.getContentHash().equals(contentHash))) {
+                    continue;
+                }
+                Matcher m = LEGACY_NAME.matcher(name);
+                String sourceName = m.matches() ? m.group(1) + m.group(2) : name;
+                backups.add(newBackup(uniqueName(backups, name.substring(0, name.length() - ".html".length())),
+                        sourceName, Files.getLastModifiedTime(file).toInstant(), content.length, blobs.put(content)));
+                added++;
+            }
+            if (added > 0) {
+                backups.sort(Comparator.comparing(backup -> Instant.parse(backup.getCreatedAt())));
+                saveManifest(campId, backups);
+                logger.info("Copied {} legacy backups of campaign {} into the blob store", added, campId);
+            }
+            if (maxCount > 0 || maxAgeDays > 0) {
+                deleteLegacyBackups(campId, files);
+            }
+            return added;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * With templ.backup.migrate-legacy set, migrates every campaign's legacy
+     * backups once the application is up, on a thread of its own.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyOnStartup() {
+        if (!migrateLegacy) {
+            return;
+        }
+        Thread thread = new Thread(this::migrateAllLegacy, "template-backup-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void migrateAllLegacy() {
+        List<String> campIds;
+        try (Stream<Path> stream = Files.list(Paths.get(templBasePath))) {
+            campIds = stream
+                    .filter(dir -> Files.isDirectory(dir.resolve(LEGACY_BACKUP_DIR)))
+                    .map(dir -> dir.getFileName().toString())
+                    .toList();
+        } catch (IOException e) {
+            logger.warn("Could not list campaigns for legacy backup migration: {}", e.getMessage());
+            return;
+        }
+        int migrated = 0;
+        for (String campId : campIds) {
+            try {
+                migrated += migrateLegacy(campId);
+            } catch (Exception e) {
+                logger.warn("Legacy backup migration of campaign {} failed: {}", campId, e.getMessage());
+            }
+        }
+        logger.info("Legacy backup migration copied {} backups from {} campaigns", migrated, campIds.size());
+    }
+
+    private void deleteLegacyBackups(String campId, List<Path> migrated) throws IOException {
+        for (Path file : migrated) {
+            Files.deleteIfExists(file);
+        }
+        try {
+            Files.deleteIfExists(legacyBackupDir(campId));
+        } catch (DirectoryNotEmptyException e) {
+            // something other than a backup is in there; leave it
+        }
+    }
+
+    private Path legacyBackupDir(String campId) {
+        return Paths.get(templBasePath, campId, LEGACY_BACKUP_DIR);
+    }
+
+    private static List<Path> listLegacyBackups(Path legacyDir) throws IOException {
+        if (!Files.isDirectory(legacyDir)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(legacyDir)) {
+            return stream
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase().endsWith(".html"))
+                    .toList();
+        }
+    }
+
+    private static TemplateBackup newBackup(String name, String sourceName, Instant createdAt, long size,
+            String contentHash) {
+        TemplateBackup backup = new TemplateBackup();
+        backup.setName(name);
+        backup.setSourceName(sourceName);
+        backup.setCreatedAt(createdAt.toString());
+        backup.setSize(size);
+        backup.setContentHash(contentHash);
+        return backup;
+    }
+
+    // Two saves within the same second would otherwise get the same name
+    private static String uniqueName(List<TemplateBackup> backups, String baseName) {
+        String name = baseName + ".html";
+        for (int n = 1; containsName(backups, name); n++) {
+            name = baseName + "-" + n + ".html";
+        }
+        return name;
+    }
+
+    private static boolean containsName(List<TemplateBackup> backups, String name) {
+        return backups.stream().anyMatch(backup -> backup.getName().equals(name));
+    }
+
+    private List<TemplateBackup> readManifest(String campId) throws IOException {
+        try {
+            byte[] json = Files.readAllBytes(manifestFile(campId));
+            return new ArrayList<>(Arrays.asList(mapper.readValue(json, TemplateBackup[].class)));
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        } catch (JacksonException e) {
+            throw new IOException("Backup manifest of campaign " + campId + " is unreadable: " + e.getMessage());
+        }
+    }
+
+    private void writeManifest(String campId, List<TemplateBackup> backups) throws IOException {
+        Files.createDirectories(manifestDir);
+        AtomicFiles.write(manifestFile(campId), mapper.writeValueAsBytes(backups));
+    }
+
+    private List<String> listManifests() throws IOException {
+        if (!Files.isDirectory(manifestDir)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(manifestDir)) {
+            return stream
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(MANIFEST_SUFFIX) && !name.startsWith("."))
+                    .map(name -> name.substring(0, name.length() - MANIFEST_SUFFIX.length()))
+                    .toList();
+        }
+    }
+}
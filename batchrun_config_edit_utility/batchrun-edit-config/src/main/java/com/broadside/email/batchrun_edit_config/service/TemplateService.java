@@ -1,24 +1,48 @@
 package com.broadside.email.batchrun_edit_config.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.security.MessageDigest;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.regex.Pattern;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.broadside.email.batchrun_edit_config.model.HtmlFinding;
+import com.broadside.email.batchrun_edit_config.model.TemplateBackup;
+import com.broadside.email.batchrun_edit_config.model.TemplateSidecar;
 import com.broadside.email.batchrun_edit_config.model.TemplateUpdateRequest;
 import com.broadside.email.batchrun_edit_config.model.TemplateView;
+import com.broadside.email.batchrun_edit_config.utils.AtomicFiles;
+import com.broadside.email.batchrun_edit_config.utils.CampaignLockManager;
+import com.broadside.email.batchrun_edit_config.utils.DirectoryWatcher;
+import com.broadside.email.batchrun_edit_config.utils.ETags;
+import com.broadside.email.batchrun_edit_config.utils.Hashing;
+import com.broadside.email.batchrun_edit_config.utils.HtmlStructureValidator;
+import com.broadside.email.batchrun_edit_config.utils.StorageMetrics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
 
 @Service
 public class TemplateService {
@@ -27,12 +51,81 @@ public class TemplateService {
 
     // Configuration constants
     private static final long MAX_TEMPLATE_SIZE = 2 * 1024 * 1024; // 2MB
-    private static final Pattern HTML_BASIC_PATTERN = Pattern.compile("(?i)<html[^>]*>.*</html>", Pattern.DOTALL);
-    private static final DateTimeFormatter BACKUP_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final int OPEN_ATTEMPTS = 3;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    // Per-campaign TemplateSidecar; hidden and not .html, so never taken for the template
+    private static final String SIDECAR_FILE_NAME = ".template-meta.json";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private CampaignLockManager lockManager;
+
+    @Autowired
+    private TemplateBackupService backupService;
+
+    @Autowired
+    private StorageMetrics metrics;
 
     @Value("${templ.storage.path}")
     private String templBasePath;
 
+    // Upper bound on the summed size of the cached template contents
+    @Value("${templ.cache.max-bytes:134217728}")
+    private long cacheMaxBytes;
+
+    /**
+     * Everything getTemplate derives from a campaign directory: the resolved
+     * file, its content, hash and validation result, and the description and
+     * version it was saved with. Valid for as long as the file's size and
+     * mtime are unchanged and the watcher has reported nothing else under the
+     * campaign directory. Backups come from the backup catalog instead.
+     */
+    private record TemplateMeta(Path file, boolean exists, long size, FileTime lastModified, String htmlContent,
+            String contentHash, List<HtmlFinding> findings, String description, String version) {
+
+        static TemplateMeta missing(Path file) {
+            return new TemplateMeta(file, false, 0, null, "", "", List.of(), null, null);
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return attrs.size() == size && attrs.lastModifiedTime().equals(lastModified);
+        }
+    }
+
+    private Cache<String, TemplateMeta> cache;
+    private DirectoryWatcher watcher;
+
+    private Timer readTimer;
+    private Timer writeTimer;
+    private Timer hashTimer;
+    private Timer validateTimer;
+    private Timer backupTimer;
+
+    // Bumped on every invalidation so a load racing with a change is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    void startCache() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                .weigher((String campId, TemplateMeta meta) -> (int) Math.min(Integer.MAX_VALUE, meta.size()))
+                .build();
+        watcher = new DirectoryWatcher(Paths.get(templBasePath), true, this::onFileChanged);
+        watcher.start("template-watcher");
+
+        readTimer = metrics.timer(StorageMetrics.TEMPLATE, "read");
+        writeTimer = metrics.timer(StorageMetrics.TEMPLATE, "write");
+        hashTimer = metrics.timer(StorageMetrics.TEMPLATE, "hash");
+        validateTimer = metrics.timer(StorageMetrics.TEMPLATE, "validate");
+        backupTimer = metrics.timer(StorageMetrics.TEMPLATE, "backup");
+    }
+
+    @PreDestroy
+    void stopCache() {
+        watcher.close();
+    }
+
     private Path resolveTemplateFile(String campId) {
         return Paths.get(templBasePath, campId, campId + ".html");
     }
@@ -41,6 +134,10 @@ public class TemplateService {
         return Paths.get(templBasePath, campId);
     }
 
+    private Path resolveSidecarFile(String campId) {
+        return resolveTemplateDirectory(campId).resolve(SIDECAR_FILE_NAME);
+    }
+
     /**
      * Finds existing HTML file in the template directory
      * Returns the path of the first .html file found, or null if none exists
@@ -62,32 +159,6 @@ public class TemplateService {
         }
     }
 
-    /**
-     * Creates a backup of existing HTML file with its original name
-     */
-    private String createBackupWithOriginalName(String campId, Path existingFile) throws IOException {
-        if (!Files.exists(existingFile)) {
-            return ""; // No existing file to backup
-        }
-
-        String timestamp = LocalDateTime.now().format(BACKUP_TIMESTAMP_FORMAT);
-        String originalFileName = existingFile.getFileName().toString();
-        String fileNameWithoutExt = originalFileName.substring(0, originalFileName.lastIndexOf(".html"));
-
-        Path backupDir = resolveTemplateDirectory(campId).resolve("backups");
-        Path backupFile = backupDir.resolve(fileNameWithoutExt + "_" + timestamp + ".html");
-
-        // Create backup directory if it doesn't exist
-        Files.createDirectories(backupDir);
-
-        // Copy existing file to backup with timestamp
-        Files.copy(existingFile, backupFile, StandardCopyOption.REPLACE_EXISTING);
-
-        logger.info("Created backup for campaign {} from {} to {}", campId, existingFile.getFileName(),
-                backupFile.getFileName());
-        return backupFile.toString();
-    }
-
     /**
      * Validates campaign ID for security
      */
@@ -108,7 +179,8 @@ public class TemplateService {
     }
 
     /**
-     * Validates HTML content
+     * Rejects content that cannot be stored at all: null, blank or too large.
+     * Structure is checked separately and only ever produces warnings.
      */
     private void validateHtmlContent(String htmlContent) {
         if (htmlContent == null) {
@@ -123,66 +195,143 @@ public class TemplateService {
             throw new IllegalArgumentException(
                     "HTML content exceeds maximum size of " + (MAX_TEMPLATE_SIZE / 1024 / 1024) + "MB");
         }
+    }
+
+    /**
+     * Structural problems in the template (unbalanced tags, unclosed comments,
+     * missing html/body), in document order. Empty means the structure is fine.
+     */
+    public List<HtmlFinding> checkHtmlStructure(String htmlContent) {
+        return validateTimer.record(() -> HtmlStructureValidator.validate(htmlContent));
+    }
+
+    private String hash(byte[] content) {
+        return hashTimer.record(() -> Hashing.sha256Hex(content));
+    }
 
-        // Basic HTML structure validation
-        if (!HTML_BASIC_PATTERN.matcher(htmlContent.trim()).matches()) {
-            logger.warn("HTML content doesn't appear to have proper HTML structure");
+    private static void logFindings(String campId, List<HtmlFinding> findings) {
+        if (!findings.isEmpty()) {
+            logger.warn("Template for campaign {} has HTML structure problems: {}", campId,
+                    describeFindings(findings));
         }
     }
 
+    private static void setValidation(TemplateView view, List<HtmlFinding> findings) {
+        view.setValidHtml(findings.isEmpty());
+        view.setValidationFindings(findings);
+        view.setValidationMessage(
+                findings.isEmpty() ? "Valid HTML structure" : "Warning: " + describeFindings(findings));
+    }
+
+    // "line 3, column 5: <div> is never closed (and 2 more)"
+    private static String describeFindings(List<HtmlFinding> findings) {
+        HtmlFinding first = findings.get(0);
+        String description = "line " + first.getLine() + ", column " + first.getColumn() + ": " + first.getMessage();
+        return findings.size() > 1 ? description + " (and " + (findings.size() - 1) + " more)" : description;
+    }
+
     /**
-     * Calculates SHA-256 hash of content for integrity checking
+     * A template opened for streaming, together with the view describing it.
+     * The channel holds exactly the content the view's hash, size and mtime
+     * describe, even if the file is replaced while it is being read.
      */
-    private String calculateHash(String content) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (Exception e) {
-            logger.error("Error calculating hash", e);
-            return "";
-        }
+    public record OpenTemplate(TemplateView view, FileChannel channel) {
     }
 
     public TemplateView getTemplate(String campId) throws IOException {
         validateCampId(campId);
+        return toView(campId, templateMeta(campId));
+    }
 
-        // First, try to find any existing HTML file in the directory
+    /**
+     * Like getTemplate, but without htmlContent, and the template file is not
+     * read if a cached entry or the sidecar already describes it. Only a
+     * template nothing describes yet (edited outside this service) is read,
+     * hashed and validated once, which also refreshes its sidecar.
+     */
+    public TemplateView getTemplateMeta(String campId) throws IOException {
+        validateCampId(campId);
+        TemplateMeta meta = freshCachedMeta(campId);
+        if (meta == null) {
+            meta = describedMeta(campId);
+        }
+        if (meta == null) {
+            meta = loadTemplateMeta(campId, cache.getIfPresent(campId));
+        }
+        TemplateView view = toView(campId, meta);
+        view.setHtmlContent(null);
+        return view;
+    }
+
+    // The template's metadata from its sidecar, or null if the sidecar does not match the file
+    private TemplateMeta describedMeta(String campId) throws IOException {
         Path existingHtmlFile = findExistingHtmlFile(campId);
         Path templateFile = existingHtmlFile != null ? existingHtmlFile : resolveTemplateFile(campId);
+        BasicFileAttributes attrs = stat(templateFile);
+        if (attrs == null) {
+            return TemplateMeta.missing(templateFile);
+        }
+        TemplateSidecar sidecar = readSidecar(campId);
+        if (sidecar == null || !describes(sidecar, attrs)) {
+            return null;
+        }
+        // Not cached: the cache only holds entries with content
+        return new TemplateMeta(templateFile, true, attrs.size(), attrs.lastModifiedTime(), null,
+                sidecar.getContentHash(), sidecar.getFindings(), sidecar.getDescription(), sidecar.getVersion());
+    }
+
+    /**
+     * Opens the current template file, or returns null if there is none. The
+     * caller owns the returned channel.
+     */
+    public OpenTemplate openTemplate(String campId) throws IOException {
+        validateCampId(campId);
+
+        for (int attempt = 0; attempt < OPEN_ATTEMPTS; attempt++) {
+            TemplateMeta meta = templateMeta(campId);
+            if (!meta.exists()) {
+                return null;
+            }
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(meta.file(), StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                invalidate(campId);
+                continue;
+            }
+            // Writes replace the file by rename, so if the path still matches after
+            // opening, the open descriptor is the file the metadata was taken from
+            BasicFileAttributes attrs = stat(meta.file());
+            if (attrs != null && meta.matches(attrs) && channel.size() == meta.size()) {
+                return new OpenTemplate(toView(campId, meta), channel);
+            }
+            channel.close();
+            invalidate(campId);
+        }
+        throw new IOException("Template for campaign " + campId + " is changing too fast to be read");
+    }
 
+    private TemplateView toView(String campId, TemplateMeta meta) throws IOException {
         TemplateView view = new TemplateView();
         view.setCampId(campId);
-        view.setFilePath(templateFile.toString());
+        view.setFilePath(meta.file().toString());
 
-        if (Files.exists(templateFile)) {
+        if (meta.exists()) {
             view.setExists(true);
-            String htmlContent = Files.readString(templateFile, StandardCharsets.UTF_8);
-            view.setHtmlContent(htmlContent);
-            view.setFileSize(Files.size(templateFile));
-            view.setContentHash(calculateHash(htmlContent));
-
-            FileTime lastModified = Files.getLastModifiedTime(templateFile);
-            view.setLastModified(lastModified.toInstant().toString());
+            view.setHtmlContent(meta.htmlContent());
+            view.setFileSize(meta.size());
+            view.setContentHash(meta.contentHash());
+            view.setLastModified(meta.lastModified().toInstant().toString());
+            view.setDescription(meta.description());
+            view.setVersion(meta.version());
 
-            // Check for HTML validity
-            view.setValidHtml(HTML_BASIC_PATTERN.matcher(htmlContent.trim()).matches());
-            view.setValidationMessage(
-                    view.isValidHtml() ? "Valid HTML structure" : "Warning: HTML structure may be incomplete");
+            setValidation(view, meta.findings());
 
             // Check if backups exist
-            Path backupDir = resolveTemplateDirectory(campId).resolve("backups");
-            view.setHasBackup(Files.exists(backupDir) && Files.list(backupDir).findAny().isPresent());
+            Path backupLocation = backupService.backupLocation(campId);
+            view.setHasBackup(backupLocation != null);
             if (view.isHasBackup()) {
-                view.setBackupPath(backupDir.toString());
+                view.setBackupPath(backupLocation.toString());
             }
 
         } else {
@@ -192,6 +341,7 @@ public class TemplateService {
             view.setLastModified("");
             view.setContentHash("");
             view.setValidHtml(false);
+            view.setValidationFindings(List.of());
             view.setValidationMessage("Template file does not exist");
             view.setHasBackup(false);
         }
@@ -199,10 +349,407 @@ public class TemplateService {
         return view;
     }
 
-    public TemplateView updateTemplate(String campId, TemplateUpdateRequest request) throws IOException {
+    /**
+     * Returns the cached metadata for a campaign. While the directory watcher is
+     * running a hit costs one stat of the template file; otherwise the
+     * directory is resolved again, but content, hash and validation are still
+     * reused if the file itself is unchanged.
+     */
+    private TemplateMeta templateMeta(String campId) throws IOException {
+        TemplateMeta fresh = freshCachedMeta(campId);
+        return fresh != null ? fresh : loadTemplateMeta(campId, cache.getIfPresent(campId));
+    }
+
+    // The cached entry if the watcher is running and the file still matches it, else null
+    private TemplateMeta freshCachedMeta(String campId) throws IOException {
+        TemplateMeta cached = cache.getIfPresent(campId);
+        if (cached == null || !watcher.isActive()) {
+            return null;
+        }
+        if (!cached.exists()) {
+            return cached;
+        }
+        BasicFileAttributes attrs = stat(cached.file());
+        return attrs != null && cached.matches(attrs) ? cached : null;
+    }
+
+    private TemplateMeta loadTemplateMeta(String campId, TemplateMeta previous) throws IOException {
+        long generation = invalidations.get();
+
+        // First, try to find any existing HTML file in the directory
+        Path existingHtmlFile = findExistingHtmlFile(campId);
+        Path templateFile = existingHtmlFile != null ? existingHtmlFile : resolveTemplateFile(campId);
+
+        TemplateMeta meta;
+        BasicFileAttributes attrs = stat(templateFile);
+        if (attrs == null) {
+            meta = TemplateMeta.missing(templateFile);
+        } else if (previous != null && previous.exists() && previous.file().equals(templateFile)
+                && previous.matches(attrs)) {
+            meta = previous;
+        } else {
+            Timer.Sample read = Timer.start();
+            byte[] content = Files.readAllBytes(templateFile);
+            read.stop(readTimer);
+            metrics.bytesRead(StorageMetrics.TEMPLATE, campId, content.length);
+            String htmlContent = new String(content, StandardCharsets.UTF_8);
+            TemplateSidecar sidecar = readSidecar(campId);
+            if (sidecar != null && describes(sidecar, attrs) && sidecar.getSize() == content.length) {
+                // Hashed and validated when it was written; only the content has to be read
+                meta = new TemplateMeta(templateFile, true, content.length, attrs.lastModifiedTime(), htmlContent,
+                        sidecar.getContentHash(), sidecar.getFindings(), sidecar.getDescription(),
+                        sidecar.getVersion());
+            } else {
+                meta = new TemplateMeta(templateFile, true, content.length, attrs.lastModifiedTime(), htmlContent,
+                        hash(content), checkHtmlStructure(htmlContent), null, null);
+                refreshSidecar(campId, meta);
+            }
+        }
+
+        if (invalidations.get() == generation) {
+            cache.put(campId, meta);
+        }
+        return meta;
+    }
+
+    private static boolean describes(TemplateSidecar sidecar, BasicFileAttributes attrs) {
+        return sidecar.getSize() == attrs.size()
+                && attrs.lastModifiedTime().toInstant().toString().equals(sidecar.getLastModified())
+                && sidecar.getContentHash() != null && sidecar.getFindings() != null;
+    }
+
+    private TemplateSidecar readSidecar(String campId) {
+        Path file = resolveSidecarFile(campId);
+        try {
+            return mapper.readValue(Files.readAllBytes(file), TemplateSidecar.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | JacksonException e) {
+            logger.warn("Ignoring unreadable template metadata {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static TemplateSidecar sidecarFor(long size, FileTime lastModified, String contentHash,
+            List<HtmlFinding> findings) {
+        TemplateSidecar sidecar = new TemplateSidecar();
+        sidecar.setSize(size);
+        sidecar.setLastModified(lastModified.toInstant().toString());
+        sidecar.setContentHash(contentHash);
+        sidecar.setFindings(findings);
+        return sidecar;
+    }
+
+    /**
+     * Best effort: the template itself is already in place, and a missing or
+     * stale sidecar only means the next cold read hashes and validates again.
+     */
+    private void writeSidecar(String campId, TemplateSidecar sidecar) {
+        try {
+            AtomicFiles.write(resolveSidecarFile(campId), mapper.writeValueAsBytes(sidecar));
+        } catch (IOException | JacksonException e) {
+            logger.warn("Could not write template metadata for campaign {}: {}", campId, e.getMessage());
+        }
+    }
+
+    /**
+     * Records a template that was edited outside this service (or predates
+     * sidecars), so the next cold read can skip hashing and validation.
+     * Skipped while a write to the campaign is in progress; it leaves its own.
+     */
+    private void refreshSidecar(String campId, TemplateMeta meta) throws IOException {
+        Lock lock = lockManager.lockFor(campId);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            BasicFileAttributes attrs = stat(meta.file());
+            if (attrs != null && meta.matches(attrs)) {
+                writeSidecar(campId, sidecarFor(meta.size(), meta.lastModified(), meta.contentHash(),
+                        meta.findings()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static BasicFileAttributes stat(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void onFileChanged(Path path) {
+        if (path != null && isSidecar(path)) {
+            // Only ever written by this service, right after the template it describes
+            return;
+        }
+        invalidations.incrementAndGet();
+        if (path == null) {
+            cache.invalidateAll();
+            return;
+        }
+        Path relative = Paths.get(templBasePath).relativize(path);
+        if (relative.getNameCount() > 0) {
+            cache.invalidate(relative.getName(0).toString());
+        }
+    }
+
+    // The sidecar itself or one of its AtomicFiles temp files
+    private static boolean isSidecar(Path path) {
+        String name = path.getFileName().toString();
+        return name.equals(SIDECAR_FILE_NAME) || name.startsWith("." + SIDECAR_FILE_NAME + ".");
+    }
+
+    private void invalidate(String campId) {
+        invalidations.incrementAndGet();
+        cache.invalidate(campId);
+    }
+
+    /**
+     * Writes the template. When ifMatch is given, the write only happens if it
+     * still matches the stored content. Compare and write run under the
+     * campaign's lock, so writes to other campaigns are not blocked.
+     *
+     * @throws PreconditionFailedException if ifMatch no longer matches
+     */
+    public TemplateView updateTemplate(String campId, TemplateUpdateRequest request, String ifMatch)
+            throws IOException {
         validateCampId(campId);
         validateHtmlContent(request.getHtmlContent());
+        String htmlContent = request.getHtmlContent();
+        List<HtmlFinding> findings = checkHtmlStructure(htmlContent);
+        logFindings(campId, findings);
+
+        return writeTemplate(campId, htmlContent.getBytes(StandardCharsets.UTF_8), htmlContent, findings,
+                request.isCreateBackup(), ifMatch, request.getDescription(), request.getVersion());
+    }
+
+    /**
+     * Makes a backed-up version the live template again, backing up the
+     * current one first if requested. Returns null if the campaign has no
+     * backup of that name.
+     *
+     * @throws PreconditionFailedException if ifMatch no longer matches
+     */
+    public TemplateView restoreTemplate(String campId, String backupName, boolean createBackup, String ifMatch)
+            throws IOException {
+        validateCampId(campId);
+        TemplateBackup backup = backupService.findBackup(campId, backupName);
+        if (backup == null) {
+            return null;
+        }
+        byte[] content = backupService.readBackup(backup);
+        String htmlContent = new String(content, StandardCharsets.UTF_8);
+        List<HtmlFinding> findings = checkHtmlStructure(htmlContent);
+        logFindings(campId, findings);
+
+        return writeTemplate(campId, content, htmlContent, findings, createBackup, ifMatch,
+                "Restored from backup " + backup.getName(), null);
+    }
+
+    /**
+     * The campaign's backups, newest first, from the backup catalog.
+     */
+    public List<TemplateBackup> listBackups(String campId) throws IOException {
+        validateCampId(campId);
+        return backupService.listBackups(campId);
+    }
+
+    /**
+     * Removes backups beyond the newest keep and those older than
+     * olderThanDays; see {@link TemplateBackupService#prune}.
+     */
+    public List<TemplateBackup> pruneBackups(String campId, Integer keep, Integer olderThanDays) throws IOException {
+        validateCampId(campId);
+        if (keep == null && olderThanDays == null) {
+            throw new IllegalArgumentException("keep or olderThanDays is required");
+        }
+        if ((keep != null && keep < 0) || (olderThanDays != null && olderThanDays < 0)) {
+            throw new IllegalArgumentException("keep and olderThanDays cannot be negative");
+        }
+        return backupService.prune(campId, keep, olderThanDays);
+    }
+
+    /**
+     * Copies the files in the campaign's legacy backups/ directory into the
+     * backup store, and returns how many were added.
+     */
+    public int migrateLegacyBackups(String campId) throws IOException {
+        validateCampId(campId);
+        return backupService.migrateLegacy(campId);
+    }
+
+    private TemplateView writeTemplate(String campId, byte[] content, String htmlContent, List<HtmlFinding> findings,
+            boolean createBackup, String ifMatch, String description, String version) throws IOException {
+        Lock lock = lockManager.lockFor(campId);
+        lock.lock();
+        try {
+            checkIfMatch(campId, ifMatch);
+            InstalledTemplate installed = installTemplate(campId, createBackup,
+                    target -> AtomicFiles.write(target, content));
+            metrics.bytesWritten(StorageMetrics.TEMPLATE, campId, content.length);
+
+            // Built from what was just written, so the content is not read back and validated again
+            TemplateMeta written = cacheWritten(campId, installed.file(), content, htmlContent, findings,
+                    description, version);
+            TemplateView result = toView(campId, written);
+
+            if (installed.backupName() != null) {
+                result.setBackupName(installed.backupName());
+                result.setHasBackup(true);
+            }
+
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Streams an uploaded template into a temp file next to the live one,
+     * hashing and checking it on the way, then promotes it under the campaign
+     * lock (honouring ifMatch like updateTemplate). Staging uses one copy
+     * buffer regardless of template size, and the returned view is metadata
+     * only: htmlContent is left null rather than read back.
+     *
+     * @throws PreconditionFailedException if ifMatch no longer matches
+     */
+    public TemplateView updateTemplateFromStream(String campId, InputStream content, boolean createBackup,
+            String ifMatch) throws IOException {
+        validateCampId(campId);
+
+        Files.createDirectories(resolveTemplateDirectory(campId));
+        Path staged = AtomicFiles.tempFileFor(resolveTemplateFile(campId));
+        try {
+            StagedTemplate template = stage(campId, content, staged);
+
+            Lock lock = lockManager.lockFor(campId);
+            lock.lock();
+            try {
+                checkIfMatch(campId, ifMatch);
+                InstalledTemplate installed = installTemplate(campId, createBackup,
+                        target -> AtomicFiles.promote(staged, target));
+                metrics.bytesWritten(StorageMetrics.TEMPLATE, campId, template.size());
+
+                FileTime lastModified = Files.getLastModifiedTime(installed.file());
+                writeSidecar(campId, sidecarFor(template.size(), lastModified, template.contentHash(),
+                        template.findings()));
+
+                TemplateView result = new TemplateView();
+                result.setCampId(campId);
+                result.setFilePath(installed.file().toString());
+                result.setExists(true);
+                result.setFileSize(template.size());
+                result.setContentHash(template.contentHash());
+                result.setLastModified(lastModified.toInstant().toString());
+                setValidation(result, template.findings());
+                Path backupLocation = backupService.backupLocation(campId);
+                result.setHasBackup(backupLocation != null);
+                if (backupLocation != null) {
+                    result.setBackupPath(backupLocation.toString());
+                }
+                result.setBackupName(installed.backupName());
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    private record StagedTemplate(long size, String contentHash, List<HtmlFinding> findings) {
+    }
+
+    /**
+     * Copies the stream into the staging file, computing SHA-256 and the
+     * HTML structure check as the bytes pass, and fsyncs it.
+     */
+    private StagedTemplate stage(String campId, InputStream in, Path staged) throws IOException {
+        MessageDigest digest = Hashing.newSha256();
+        HtmlStructureValidator check = new HtmlStructureValidator();
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        long size = 0;
+
+        try (FileChannel out = FileChannel.open(staged, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                size += read;
+                if (size > MAX_TEMPLATE_SIZE) {
+                    throw new IllegalArgumentException(
+                            "HTML content exceeds maximum size of " + (MAX_TEMPLATE_SIZE / 1024 / 1024) + "MB");
+                }
+                digest.update(buffer, 0, read);
+                check.update(buffer, 0, read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    out.write(chunk);
+                }
+            }
+            out.force(true);
+        }
+
+        if (check.isBlank()) {
+            throw new IllegalArgumentException("HTML content cannot be empty");
+        }
+        List<HtmlFinding> findings = check.finish();
+        logFindings(campId, findings);
+        return new StagedTemplate(size, Hashing.toHex(digest.digest()), findings);
+    }
+
+    /**
+     * Records the metadata of a template this service just wrote, in its
+     * sidecar and in the cache. Called under the campaign lock, right after
+     * installTemplate invalidated the entry.
+     */
+    private TemplateMeta cacheWritten(String campId, Path file, byte[] content, String htmlContent,
+            List<HtmlFinding> findings, String description, String version) throws IOException {
+        long generation = invalidations.get();
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        TemplateMeta meta = new TemplateMeta(file, true, content.length, attrs.lastModifiedTime(), htmlContent,
+                hash(content), findings, description, version);
+
+        TemplateSidecar sidecar = sidecarFor(meta.size(), meta.lastModified(), meta.contentHash(), findings);
+        sidecar.setDescription(description);
+        sidecar.setVersion(version);
+        writeSidecar(campId, sidecar);
+
+        if (invalidations.get() == generation) {
+            cache.put(campId, meta);
+        }
+        return meta;
+    }
+
+    private void checkIfMatch(String campId, String ifMatch) throws IOException {
+        if (ifMatch == null) {
+            return;
+        }
+        TemplateMeta current = templateMeta(campId);
+        String currentHash = current.exists() ? current.contentHash() : null;
+        if (!ETags.matches(ifMatch, currentHash)) {
+            throw new PreconditionFailedException(
+                    "Template for campaign " + campId + " was modified by someone else", currentHash);
+        }
+    }
+
+    @FunctionalInterface
+    private interface TemplateContent {
+        void writeTo(Path target) throws IOException;
+    }
 
+    // backupName is the backup taken of the replaced template, or null if none was
+    private record InstalledTemplate(Path file, String backupName) {
+    }
+
+    /**
+     * Resolves the live template file, backs it up if requested, and replaces
+     * it with the new content. Must be called under the campaign lock.
+     */
+    private InstalledTemplate installTemplate(String campId, boolean createBackup, TemplateContent content)
+            throws IOException {
         Path templateDir = resolveTemplateDirectory(campId);
 
         // Create directory if it doesn't exist
@@ -227,10 +774,17 @@ public class TemplateService {
         }
 
         // Create backup if requested and existing file exists
-        String backupPath = "";
-        if (request.isCreateBackup() && existingHtmlFile != null) {
+        String backupName = null;
+        if (createBackup && existingHtmlFile != null) {
             try {
-                backupPath = createBackupWithOriginalName(campId, existingHtmlFile);
+                // Usually known from the cache or sidecar, so an already stored version is not read again
+                TemplateMeta current = templateMeta(campId);
+                String currentHash = current.exists() && current.file().equals(existingHtmlFile)
+                        ? current.contentHash() : null;
+                Timer.Sample backupTime = Timer.start();
+                TemplateBackup backup = backupService.backup(campId, existingHtmlFile, currentHash);
+                backupTime.stop(backupTimer);
+                backupName = backup.getName();
             } catch (IOException e) {
                 logger.error("Failed to create backup for campaign {}: {}", campId, e.getMessage());
                 throw new IOException("Failed to create backup: " + e.getMessage());
@@ -238,24 +792,16 @@ public class TemplateService {
         }
 
         try {
-            // Write the new HTML content to the target file (this will override existing
-            // file)
-            Files.writeString(targetFile, request.getHtmlContent(), StandardCharsets.UTF_8);
-            logger.info("Successfully updated template for campaign {} at: {}", campId, targetFile.getFileName());
-
-            // Return the updated template view (note: this will read from the updated file)
-            TemplateView result = getTemplate(campId);
-
-            // Add metadata from request
-            result.setDescription(request.getDescription());
-            result.setVersion(request.getVersion());
-            if (!backupPath.isEmpty()) {
-                result.setBackupPath(backupPath);
-                result.setHasBackup(true);
+            // Replace the target file with the new content (this will override existing file)
+            Timer.Sample write = Timer.start();
+            try {
+                content.writeTo(targetFile);
+            } finally {
+                invalidate(campId);
             }
-
-            return result;
-
+            write.stop(writeTimer);
+            logger.info("Successfully updated template for campaign {} at: {}", campId, targetFile.getFileName());
+            return new InstalledTemplate(targetFile, backupName);
         } catch (IOException e) {
             logger.error("Failed to write template for campaign {}: {}", campId, e.getMessage());
             throw new IOException("Failed to write template file: " + e.getMessage());
@@ -263,7 +809,9 @@ public class TemplateService {
     }
 
     /**
-     * Validates template without saving (useful for pre-upload validation)
+     * Validates template without saving (useful for pre-upload validation).
+     * False only if the content could not be stored at all; see
+     * {@link #checkHtmlStructure} for structural warnings.
      */
     public boolean validateTemplate(String htmlContent) {
         try {
@@ -282,6 +830,11 @@ public class TemplateService {
     public Path getTemplateFilePath(String campId) throws IOException {
         validateCampId(campId);
 
+        TemplateMeta cached = cache.getIfPresent(campId);
+        if (cached != null && cached.exists() && watcher.isActive()) {
+            return cached.file();
+        }
+
         // Try to find existing HTML file first
         Path existingFile = findExistingHtmlFile(campId);
         if (existingFile != null) {
@@ -291,15 +844,4 @@ public class TemplateService {
         // Return default path if no existing file
         return resolveTemplateFile(campId);
     }
-
-    /**
-     * Updates template from file content
-     */
-    public TemplateView updateTemplateFromFile(String campId, String htmlContent, boolean createBackup)
-            throws IOException {
-        TemplateUpdateRequest request = new TemplateUpdateRequest();
-        request.setHtmlContent(htmlContent);
-        request.setCreateBackup(createBackup);
-        return updateTemplate(campId, request);
-    }
 }
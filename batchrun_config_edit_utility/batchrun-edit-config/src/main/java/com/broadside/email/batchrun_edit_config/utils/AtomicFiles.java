@@ -0,0 +1,77 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.UUID;
+
+/**
+ * Replaces files so that readers see either the old or the new content, never
+ * a partial write. Content goes to a hidden temp file in the same directory,
+ * is fsynced, then renamed over the target.
+ */
+public final class AtomicFiles {
+
+    // Deliberately not .html/.conf so directory scans never pick up a temp file
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private AtomicFiles() {
+    }
+
+    public static void write(Path target, byte[] content) throws IOException {
+        Path tmp = tempFileFor(target);
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            promote(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Returns a fresh hidden temp path in target's directory. Content staged
+     * there (and fsynced) can later replace target via {@link #promote}.
+     */
+    public static Path tempFileFor(Path target) {
+        return target.toAbsolutePath().getParent()
+                .resolve("." + target.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Atomically renames a fully written, fsynced temp file over target.
+     */
+    public static void promote(Path tmp, Path target) throws IOException {
+        copyPermissions(target, tmp);
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView source = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (source != null && Files.exists(from)) {
+            Files.getFileAttributeView(to, PosixFileAttributeView.class)
+                    .setPermissions(source.readAttributes().permissions());
+        }
+    }
+
+    // Makes the rename itself durable; not every platform can open a directory
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+}
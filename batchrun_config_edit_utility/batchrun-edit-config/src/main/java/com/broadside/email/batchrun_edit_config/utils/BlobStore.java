@@ -0,0 +1,149 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of gzipped blobs, keyed by the SHA-256 of the
+ * uncompressed content. Identical content is stored once however many times
+ * it is put. Blobs live under root/xx/&lt;hash&gt;.gz, xx being the first two
+ * hex digits, and are written with {@link AtomicFiles}.
+ *
+ * The store does not track references itself: callers record the hashes they
+ * use and pass the full set to {@link #sweep}. Putting or touching a blob
+ * resets its mtime, and sweep leaves recent blobs alone, so a blob put just
+ * before its reference is recorded is not collected in between. Sweep checks
+ * a blob's mtime and deletes it under the write lock, which put and touch
+ * share, so a blob cannot be touched between the check and the delete.
+ */
+public class BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStore.class);
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final String SUFFIX = ".gz";
+
+    private final Path root;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public BlobStore(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Stores content unless a blob with the same hash exists, and returns the
+     * hash.
+     */
+    public String put(byte[] content) throws IOException {
+        String hash = Hashing.sha256Hex(content);
+        if (touch(hash)) {
+            return hash;
+        }
+        byte[] compressed = Compression.gzip(content);
+        Path blob = blobPath(hash);
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(blob.getParent());
+            AtomicFiles.write(blob, compressed);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return hash;
+    }
+
+    /**
+     * Marks an existing blob as in use; false if there is no such blob.
+     */
+    public boolean touch(String hash) throws IOException {
+        Path blob = blobPath(hash);
+        lock.readLock().lock();
+        try {
+            Files.setLastModifiedTime(blob, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the uncompressed content, checked against its hash.
+     *
+     * @throws NoSuchFileException if there is no such blob
+     * @throws IOException if the blob is corrupt
+     */
+    public byte[] get(String hash) throws IOException {
+        byte[] content = Compression.gunzip(Files.readAllBytes(blobPath(hash)));
+        if (!Hashing.sha256Hex(content).equals(hash)) {
+            throw new IOException("Blob " + hash + " does not match its hash");
+        }
+        return content;
+    }
+
+    /**
+     * Deletes every blob not in referenced that was last put or touched before
+     * cutoff, along with temp files left behind by interrupted writes. Returns
+     * the number of blobs deleted.
+     */
+    public int sweep(Set<String> referenced, Instant cutoff) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root, 2)) {
+            files = stream.filter(Files::isRegularFile).toList();
+        }
+
+        int deleted = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            boolean blob = name.endsWith(SUFFIX) && HASH.matcher(hashOf(name)).matches();
+            if (blob && referenced.contains(hashOf(name))) {
+                continue;
+            }
+            lock.writeLock().lock();
+            try {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)
+                        && blob) {
+                    deleted++;
+                }
+            } catch (NoSuchFileException e) {
+                // replaced or removed since the walk
+            } catch (IOException e) {
+                logger.warn("Could not delete {} from blob store: {}", file, e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return deleted;
+    }
+
+    public static boolean isHash(String hash) {
+        return hash != null && HASH.matcher(hash).matches();
+    }
+
+    private Path blobPath(String hash) {
+        if (!isHash(hash)) {
+            throw new IllegalArgumentException("Not a SHA-256 hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash + SUFFIX);
+    }
+
+    private static String hashOf(String fileName) {
+        return fileName.substring(0, fileName.length() - SUFFIX.length());
+    }
+}
@@ -0,0 +1,38 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Striped locks keyed by campId. Writes to the same campaign serialize; writes
+ * to different campaigns almost always land on different stripes and run in
+ * parallel. Memory stays fixed no matter how many campaigns exist.
+ */
+@Component
+public class CampaignLockManager {
+
+    private final ReentrantLock[] stripes;
+
+    public CampaignLockManager(@Value("${campaign.lock.stripes:64}") int stripeCount) {
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public Lock lockFor(String campId) {
+        return stripes[Math.floorMod(spread(campId.hashCode()), stripes.length)];
+    }
+
+    // Murmur3 finalizer, so ids differing only in a trailing counter (camp1, camp2, ...) still spread evenly
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -11,96 +11,118 @@ import java.nio.file.Path;
 
 import java.util.*;
 
+/**
+ * Parses a .conf file in a single pass over its UTF-8 bytes. Every character
+ * the format cares about (line breaks, whitespace, '#', '[', ']', ':' and the
+ * section and key names) is ASCII, and UTF-8 never uses ASCII bytes inside a
+ * multi-byte sequence, so lines are split, trimmed and matched on the raw
+ * bytes; only keys and values that end up in the ConfigView are decoded.
+ *
+ * Section and key names are matched ASCII case-insensitively. In the rare
+ * case a name is not plain ASCII, it is decoded and compared the way the
+ * line-based parser did, so the result is the same either way.
+ */
 @Component
 public class ConfigParser {
 
+    private static final int NONE = 0;
+    private static final int CONSTANTS = 1;
+    private static final int METADATA = 2;
+    private static final int TEMPLATE = 3;
+    private static final int MSGHDRS = 4;
+    private static final int ATTACHMENTS = 5;
+    private static final int NAMESPACE = 6;
+
+    private static final String[] SECTION_NAMES = {
+            null, "constants", "metadata", "template", "msghdrs", "attachments", "namespace"
+    };
+
     public ConfigView parse(Path filePath, String campId) throws IOException {
-        List<String> lines = Files.readAllLines(filePath, StandardCharsets.UTF_8);
+        return parse(Files.readAllBytes(filePath), campId);
+    }
 
+    public ConfigView parse(byte[] content, String campId) {
         ConfigView view = new ConfigView();
         view.setCampId(campId);
 
-        String currentSection = null;
+        int section = NONE;
         List<String> metadataColumns = new ArrayList<>();
         Map<String, String> msgHeaders = new LinkedHashMap<>();
 
-        for (String rawLine : lines) {
-            String line = rawLine.trim();
-
-            if (line.isEmpty() || line.startsWith("#")) {
-                continue;
+        int pos = 0;
+        while (pos < content.length) {
+            // Lines end at \n, \r or \r\n
+            int lineEnd = pos;
+            while (lineEnd < content.length && content[lineEnd] != '\n' && content[lineEnd] != '\r') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd < content.length && content[lineEnd] == '\r'
+                    && next < content.length && content[next] == '\n') {
+                next++;
             }
 
-            if (line.startsWith("[") && line.endsWith("]")) {
-                currentSection = line.substring(1, line.length() - 1).toLowerCase();
+            int start = trimStart(content, pos, lineEnd);
+            int end = trimEnd(content, start, lineEnd);
+            pos = next;
+
+            if (start == end || content[start] == '#') {
                 continue;
             }
 
-            if (currentSection == null) {
+            if (content[start] == '[' && content[end - 1] == ']') {
+                section = section(content, start + 1, end - 1);
                 continue;
             }
 
-            switch (currentSection) {
-                case "constants": {
+            int colon = indexOf(content, start, end, (byte) ':');
+
+            switch (section) {
+                case CONSTANTS: {
                     // e.g. "campid: 137783_FSN_BOUNCE_pdf"
-                    String[] kv = line.split(":", 2);
-                    if (kv.length == 2) {
-                        String key = kv[0].trim();
-                        String value = kv[1].trim();
-                        if ("campid".equalsIgnoreCase(key)) {
-                            view.setConstantCampId(value);
-                        }
+                    if (colon >= 0 && isCampIdKey(content, start, trimEnd(content, start, colon))) {
+                        view.setConstantCampId(value(content, colon, end));
                     }
                     break;
                 }
-                case "metadata": {
+                case METADATA: {
                     // e.g. "column : USERID"
-                    if (line.toLowerCase().startsWith("column")) {
-                        String[] kv = line.split(":", 2);
-                        if (kv.length == 2) {
-                            metadataColumns.add(kv[1].trim());
-                        }
+                    if (colon >= 0 && startsWith(content, start, end, "column")) {
+                        metadataColumns.add(value(content, colon, end));
                     }
                     break;
                 }
-                case "template": {
+                case TEMPLATE: {
                     // e.g. "path : 137783_FSN_BOUNCE_pdf/137783_FSN.htm"
-                    if (line.toLowerCase().startsWith("path")) {
-                        String[] kv = line.split(":", 2);
-                        if (kv.length == 2) {
-                            view.setTemplatePath(kv[1].trim());
-                        }
+                    if (colon >= 0 && startsWith(content, start, end, "path")) {
+                        view.setTemplatePath(value(content, colon, end));
                     }
                     break;
                 }
-                case "msghdrs": {
+                case MSGHDRS: {
                     // e.g. "From     :evoting@nsdl.com"
-                    String[] kv = line.split(":", 2);
-                    if (kv.length == 2) {
-                        msgHeaders.put(kv[0].trim(), kv[1].trim());
+                    if (colon >= 0) {
+                        String key = decode(content, start, trimEnd(content, start, colon));
+                        msgHeaders.put(key, value(content, colon, end));
                     }
                     break;
                 }
-                case "attachments": {
+                case ATTACHMENTS: {
                     // e.g. "dir : nsdl/ajay"
-                    if (line.toLowerCase().startsWith("dir")) {
-                        String[] kv = line.split(":", 2);
-                        if (kv.length == 2) {
-                            view.setAttachmentDir(kv[1].trim());
-                        }
+                    if (colon >= 0 && startsWith(content, start, end, "dir")) {
+                        view.setAttachmentDir(value(content, colon, end));
                     }
                     break;
                 }
-                case "namespace": {
+                case NAMESPACE: {
                     // e.g. "constant : campid"
-                    String[] kv = line.split(":", 2);
-                    if (kv.length == 2 && line.toLowerCase().startsWith("constant")) {
-                        view.setNamespaceConstant(kv[1].trim());
+                    if (colon >= 0 && startsWith(content, start, end, "constant")) {
+                        view.setNamespaceConstant(value(content, colon, end));
                     }
                     break;
                 }
                 default:
-                    // ignore unknown sections
+                    // no section yet, or an unknown one
                     break;
             }
         }
@@ -118,4 +140,110 @@ public class ConfigParser {
 
         return view;
     }
+
+    /**
+     * Maps the text between '[' and ']' to a section. Not trimmed: "[ metadata ]"
+     * is an unknown section, as it always was.
+     */
+    private static int section(byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (b[i] < 0) {
+                return sectionOf(decode(b, from, to).toLowerCase());
+            }
+        }
+        for (int s = 1; s < SECTION_NAMES.length; s++) {
+            if (equalsIgnoreCase(b, from, to, SECTION_NAMES[s])) {
+                return s;
+            }
+        }
+        return NONE;
+    }
+
+    private static int sectionOf(String name) {
+        for (int s = 1; s < SECTION_NAMES.length; s++) {
+            if (SECTION_NAMES[s].equals(name)) {
+                return s;
+            }
+        }
+        return NONE;
+    }
+
+    private static boolean isCampIdKey(byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (b[i] < 0) {
+                // String.equalsIgnoreCase folds a few non-ASCII letters onto ASCII ones
+                return "campid".equalsIgnoreCase(decode(b, from, to));
+            }
+        }
+        return equalsIgnoreCase(b, from, to, "campid");
+    }
+
+    /**
+     * Whether the lowercased line starts with keyword (which is lowercase ASCII).
+     */
+    private static boolean startsWith(byte[] b, int from, int to, String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (from + i >= to) {
+                return false;
+            }
+            byte c = b[from + i];
+            if (c < 0) {
+                return decode(b, from, to).toLowerCase().startsWith(keyword);
+            }
+            if (toLowerAscii(c) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] b, int from, int to, String name) {
+        if (to - from != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (toLowerAscii(b[from + i]) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerAscii(byte c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    // The trimmed text after the colon
+    private static String value(byte[] b, int colon, int end) {
+        int start = trimStart(b, colon + 1, end);
+        return decode(b, start, end);
+    }
+
+    private static String decode(byte[] b, int from, int to) {
+        return new String(b, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(byte[] b, int from, int to, byte target) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // String.trim() semantics: strip everything up to and including ' '
+    private static int trimStart(byte[] b, int from, int to) {
+        while (from < to && b[from] >= 0 && b[from] <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(byte[] b, int from, int to) {
+        while (to > from && b[to - 1] >= 0 && b[to - 1] <= ' ') {
+            to--;
+        }
+        return to;
+    }
 }
@@ -6,7 +6,6 @@ import com.broadside.email.batchrun_edit_config.model.ConfigView;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 
 import java.util.ArrayList;
@@ -17,6 +16,13 @@ import java.util.Map;
 public class ConfigWriter {
 
     public void write(Path filePath, ConfigView cfg) throws IOException {
+        AtomicFiles.write(filePath, render(cfg));
+    }
+
+    /**
+     * Returns the .conf file content for cfg, UTF-8 encoded.
+     */
+    public byte[] render(ConfigView cfg) {
         List<String> out = new ArrayList<>();
 
         // constants
@@ -65,6 +71,10 @@ public class ConfigWriter {
         out.add("constant : " + cfg.getNamespaceConstant());
         out.add("");
 
-        Files.write(filePath, out, StandardCharsets.UTF_8);
+        StringBuilder content = new StringBuilder();
+        for (String line : out) {
+            content.append(line).append(System.lineSeparator());
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,158 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches a directory (optionally its whole tree) and reports every created,
+ * modified or deleted path to a listener on a daemon thread. A null path means
+ * events were lost and anything under the root may have changed.
+ *
+ * Callers that cache file contents should only trust the watcher while
+ * {@link #isActive()} is true and fall back to checking the file otherwise.
+ */
+public class DirectoryWatcher implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    @FunctionalInterface
+    public interface Listener {
+        void changed(Path path);
+    }
+
+    private final Path root;
+    private final boolean recursive;
+    private final Listener listener;
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+
+    private WatchService watchService;
+    private volatile boolean active;
+
+    public DirectoryWatcher(Path root, boolean recursive, Listener listener) {
+        this.root = root;
+        this.recursive = recursive;
+        this.listener = listener;
+    }
+
+    /**
+     * Registers the root and starts the watch thread. Leaves the watcher
+     * inactive (and logs why) if the root is missing or cannot be watched.
+     */
+    public void start(String threadName) {
+        if (!Files.isDirectory(root)) {
+            logger.warn("Not watching {}: directory does not exist", root);
+            return;
+        }
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            register(root);
+        } catch (IOException e) {
+            logger.warn("Not watching {}: {}", root, e.getMessage());
+            close();
+            return;
+        }
+        active = true;
+        Thread thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public void close() {
+        active = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("Error closing watch service for {}: {}", root, e.getMessage());
+            }
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        if (!recursive) {
+            registerOne(dir);
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path subdir, BasicFileAttributes attrs) throws IOException {
+                registerOne(subdir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void registerOne(Path dir) throws IOException {
+        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.put(key, dir);
+    }
+
+    private void run() {
+        try {
+            while (active) {
+                WatchKey key = watchService.take();
+                Path dir = keys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                        listener.changed(null);
+                        continue;
+                    }
+                    Path child = dir.resolve((Path) event.context());
+                    if (recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                            && Files.isDirectory(child)) {
+                        registerNew(child);
+                    }
+                    listener.changed(child);
+                }
+                if (!key.reset()) {
+                    keys.remove(key);
+                    if (root.equals(dir)) {
+                        logger.warn("Stopped watching {}: directory is no longer accessible", root);
+                        active = false;
+                        listener.changed(null);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed on shutdown
+        } catch (RuntimeException e) {
+            logger.error("Directory watcher for {} failed: {}", root, e.getMessage(), e);
+        } finally {
+            close();
+        }
+    }
+
+    private void registerNew(Path dir) {
+        try {
+            register(dir);
+        } catch (IOException e) {
+            // Changes below dir would go unnoticed, so stop vouching for the tree
+            logger.warn("Could not watch {}: {}; falling back to file checks", dir, e.getMessage());
+            active = false;
+            listener.changed(null);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Validators for conditional requests. ETags are strong and derived from the
+ * SHA-256 of the stored file, so they change exactly when the bytes do.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String strong(String contentHash) {
+        return "\"" + contentHash + "\"";
+    }
+
+    /**
+     * Evaluates an If-Match header against the hash of the stored content (null
+     * if nothing is stored). Uses strong comparison, so weak tags never match.
+     * A missing header always matches.
+     */
+    public static boolean matches(String ifMatch, String currentHash) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return true;
+        }
+        if (ifMatch.trim().equals("*")) {
+            return currentHash != null;
+        }
+        if (currentHash == null) {
+            return false;
+        }
+        String current = strong(currentHash);
+        for (String tag : ifMatch.split(",")) {
+            if (tag.trim().equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates If-Range: true if the Range header may be honoured, i.e. the
+     * header is absent or names the current strong ETag or exact
+     * Last-Modified date.
+     */
+    public static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"")) {
+            return value.equals(etag);
+        }
+        if (value.startsWith("W/") || lastModified < 0) {
+            return false;
+        }
+        try {
+            long date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return date == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Converts an ISO-8601 lastModified as carried by the views to epoch millis,
+     * or -1 if it is absent.
+     */
+    public static long lastModifiedMillis(String lastModified) {
+        if (lastModified == null || lastModified.isEmpty()) {
+            return -1;
+        }
+        return Instant.parse(lastModified).toEpochMilli();
+    }
+}
@@ -0,0 +1,496 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import com.broadside.email.batchrun_edit_config.model.HtmlFinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single-pass structural check of a template: tags are tokenized with a small
+ * state machine (quoted and unquoted attribute values, comments, doctype and
+ * script/style bodies included) and matched against a stack of open elements. Reports unclosed
+ * comments, tags cut off at the end of the input, elements never closed, end
+ * tags with nothing to close, and a missing {@code <html>} or {@code <body>}.
+ *
+ * Runs in O(n) with no backtracking. Input can be fed as raw UTF-8 bytes in
+ * chunks (uploads) or as a String; only ASCII is significant to the grammar,
+ * and ASCII bytes never occur inside multi-byte UTF-8 sequences, so both give
+ * the same findings. Columns count characters, not bytes.
+ *
+ * Void elements and self-closing tags are never pushed. Elements whose end tag
+ * HTML lets you omit (p, li, td, tr, body, html, ...) are closed silently.
+ */
+public class HtmlStructureValidator {
+
+    private static final int MAX_FINDINGS = 50;
+    private static final int MAX_NAME_LENGTH = 32;
+
+    private static final Set<String> VOID_ELEMENTS = Set.of("area", "base", "br", "col", "embed", "hr", "img",
+            "input", "link", "meta", "param", "source", "track", "wbr");
+
+    private static final Set<String> OPTIONAL_END_TAG = Set.of("html", "head", "body", "p", "li", "dt", "dd",
+            "option", "optgroup", "tr", "td", "th", "thead", "tbody", "tfoot", "colgroup", "caption", "rb", "rt",
+            "rp");
+
+    // Elements whose content is not markup, so a '<' inside them does not start a tag
+    private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("script", "style", "textarea", "title");
+
+    private static final int TEXT = 0;
+    private static final int TAG_OPEN = 1;
+    private static final int START_NAME = 2;
+    private static final int ATTRIBUTES = 3;
+    private static final int DOUBLE_QUOTED = 4;
+    private static final int SINGLE_QUOTED = 5;
+    private static final int SELF_CLOSING = 6;
+    private static final int END_OPEN = 7;
+    private static final int END_NAME = 8;
+    private static final int END_TAIL = 9;
+    private static final int MARKUP = 10;
+    private static final int MARKUP_DASH = 11;
+    private static final int COMMENT = 12;
+    private static final int BOGUS = 13;
+    private static final int RAW_TEXT = 14;
+    private static final int BEFORE_VALUE = 15;
+    private static final int UNQUOTED_VALUE = 16;
+
+    // Names are looked up here before a new String is made for them, so the
+    // usual tags cost no allocation; indexed by length
+    private static final String[][] KNOWN_NAMES = byLength("a", "abbr", "address", "area", "article", "aside",
+            "b", "base", "big", "blockquote", "body", "br", "button", "caption", "center", "code", "col",
+            "colgroup", "dd", "div", "dl", "dt", "em", "embed", "figcaption", "figure", "font", "footer", "form",
+            "h1", "h2", "h3", "h4", "h5", "h6", "head", "header", "hr", "html", "i", "iframe", "img", "input",
+            "label", "li", "link", "main", "map", "meta", "nav", "noscript", "ol", "optgroup", "option", "p",
+            "param", "picture", "pre", "rb", "rp", "rt", "s", "script", "section", "select", "small", "source",
+            "span", "strike", "strong", "style", "sub", "sup", "svg", "table", "tbody", "td", "textarea", "tfoot",
+            "th", "thead", "title", "tr", "track", "tt", "u", "ul", "wbr");
+
+    private record OpenElement(String name, int line, int column) {
+    }
+
+    private int state = TEXT;
+    private int line = 1;
+    private int column = 1;
+    private boolean afterCarriageReturn;
+    private boolean content;
+
+    // Where the tag or comment being read started
+    private int tagLine;
+    private int tagColumn;
+
+    private final char[] name = new char[MAX_NAME_LENGTH];
+    private int nameLength;
+    private int dashes;
+
+    // "</script" etc. while inside a raw text element
+    private char[] rawTextEnd;
+    private int rawTextMatched;
+
+    private final List<OpenElement> open = new ArrayList<>();
+    // Open elements per name; entries stay at zero rather than being removed
+    private final Map<String, int[]> openCounts = new HashMap<>();
+    private boolean seenHtml;
+    private boolean seenBody;
+
+    private final List<HtmlFinding> findings = new ArrayList<>();
+    private int findingCount;
+    private boolean finished;
+
+    /**
+     * Checks a whole template held in memory.
+     */
+    public static List<HtmlFinding> validate(CharSequence html) {
+        HtmlStructureValidator validator = new HtmlStructureValidator();
+        validator.update(html);
+        return validator.finish();
+    }
+
+    public void update(byte[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            int b = buffer[i] & 0xff;
+            // UTF-8 continuation bytes belong to the character already counted
+            accept(b, (b & 0xc0) != 0x80);
+        }
+    }
+
+    public void update(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            accept(c, !Character.isLowSurrogate(c));
+        }
+    }
+
+    /**
+     * True if nothing but whitespace/control characters was seen.
+     */
+    public boolean isBlank() {
+        return !content;
+    }
+
+    /**
+     * Ends the input and returns the findings in document order (at most
+     * {@value #MAX_FINDINGS}; see {@link #getFindingCount()} for the total).
+     */
+    public List<HtmlFinding> finish() {
+        if (finished) {
+            return findings;
+        }
+        finished = true;
+
+        switch (state) {
+            case COMMENT:
+            case MARKUP_DASH:
+                report(HtmlFinding.UNCLOSED_COMMENT, "Comment is never closed with -->", tagLine, tagColumn);
+                break;
+            case START_NAME:
+            case ATTRIBUTES:
+            case DOUBLE_QUOTED:
+            case SINGLE_QUOTED:
+            case BEFORE_VALUE:
+            case UNQUOTED_VALUE:
+            case SELF_CLOSING:
+            case END_NAME:
+            case END_TAIL:
+                report(HtmlFinding.UNTERMINATED_TAG, "Tag is cut off by the end of the template", tagLine,
+                        tagColumn);
+                break;
+            default:
+                break;
+        }
+
+        for (OpenElement element : open) {
+            if (!OPTIONAL_END_TAG.contains(element.name())) {
+                report(HtmlFinding.UNCLOSED_TAG, "<" + element.name() + "> is never closed", element.line(),
+                        element.column());
+            }
+        }
+        if (!seenHtml) {
+            report(HtmlFinding.MISSING_HTML, "No <html> element", 1, 1);
+        }
+        if (!seenBody) {
+            report(HtmlFinding.MISSING_BODY, "No <body> element", 1, 1);
+        }
+
+        findings.sort(Comparator.comparingInt(HtmlFinding::getLine).thenComparingInt(HtmlFinding::getColumn));
+        return findings;
+    }
+
+    /**
+     * Total number of problems, including any beyond the reported limit.
+     */
+    public int getFindingCount() {
+        return findingCount;
+    }
+
+    private void accept(int c, boolean newCharacter) {
+        if (c > ' ') {
+            content = true;
+        }
+
+        switch (state) {
+            case TEXT:
+                if (c == '<') {
+                    startTag();
+                }
+                break;
+            case TAG_OPEN:
+                if (c == '!') {
+                    state = MARKUP;
+                } else if (c == '/') {
+                    state = END_OPEN;
+                } else if (c == '?') {
+                    state = BOGUS;
+                } else if (isLetter(c)) {
+                    nameLength = 0;
+                    appendName(c);
+                    state = START_NAME;
+                } else if (c == '<') {
+                    // "a << b": the first '<' was text
+                    startTag();
+                } else {
+                    state = TEXT;
+                }
+                break;
+            case START_NAME:
+                if (isNameChar(c)) {
+                    appendName(c);
+                } else if (c == '>') {
+                    openElement(false);
+                } else if (c == '/') {
+                    state = SELF_CLOSING;
+                } else {
+                    state = ATTRIBUTES;
+                    attribute(c);
+                }
+                break;
+            case ATTRIBUTES:
+                attribute(c);
+                break;
+            case DOUBLE_QUOTED:
+                if (c == '"') {
+                    state = ATTRIBUTES;
+                }
+                break;
+            case SINGLE_QUOTED:
+                if (c == '\'') {
+                    state = ATTRIBUTES;
+                }
+                break;
+            case BEFORE_VALUE:
+                if (c == '"') {
+                    state = DOUBLE_QUOTED;
+                } else if (c == '\'') {
+                    state = SINGLE_QUOTED;
+                } else if (c == '>') {
+                    openElement(false);
+                } else if (!isWhitespace(c)) {
+                    state = UNQUOTED_VALUE;
+                }
+                break;
+            case UNQUOTED_VALUE:
+                // "href=https://example.com/>": the '/' is part of the value, not a self-closing tag
+                if (c == '>') {
+                    openElement(false);
+                } else if (isWhitespace(c)) {
+                    state = ATTRIBUTES;
+                }
+                break;
+            case SELF_CLOSING:
+                if (c == '>') {
+                    openElement(true);
+                } else {
+                    state = ATTRIBUTES;
+                    attribute(c);
+                }
+                break;
+            case END_OPEN:
+                if (isLetter(c)) {
+                    nameLength = 0;
+                    appendName(c);
+                    state = END_NAME;
+                } else {
+                    // "</>" is dropped, anything else is a bogus comment
+                    state = c == '>' ? TEXT : BOGUS;
+                }
+                break;
+            case END_NAME:
+                if (isNameChar(c)) {
+                    appendName(c);
+                } else if (c == '>') {
+                    closeElement();
+                } else {
+                    state = END_TAIL;
+                }
+                break;
+            case END_TAIL:
+                if (c == '>') {
+                    closeElement();
+                }
+                break;
+            case MARKUP:
+                state = c == '-' ? MARKUP_DASH : c == '>' ? TEXT : BOGUS;
+                break;
+            case MARKUP_DASH:
+                if (c == '-') {
+                    dashes = 0;
+                    state = COMMENT;
+                } else {
+                    state = c == '>' ? TEXT : BOGUS;
+                }
+                break;
+            case COMMENT:
+                if (c == '>' && dashes >= 2) {
+                    state = TEXT;
+                } else if (c == '-') {
+                    dashes++;
+                } else {
+                    dashes = 0;
+                }
+                break;
+            case BOGUS:
+                if (c == '>') {
+                    state = TEXT;
+                }
+                break;
+            case RAW_TEXT:
+                rawText(c);
+                break;
+            default:
+                throw new IllegalStateException("Unknown state " + state);
+        }
+
+        if (c == '\n') {
+            if (!afterCarriageReturn) {
+                line++;
+            }
+            column = 1;
+            afterCarriageReturn = false;
+        } else if (c == '\r') {
+            line++;
+            column = 1;
+            afterCarriageReturn = true;
+        } else {
+            if (newCharacter) {
+                column++;
+            }
+            afterCarriageReturn = false;
+        }
+    }
+
+    private void startTag() {
+        tagLine = line;
+        tagColumn = column;
+        state = TAG_OPEN;
+    }
+
+    private void attribute(int c) {
+        if (c == '=') {
+            state = BEFORE_VALUE;
+        } else if (c == '"') {
+            state = DOUBLE_QUOTED;
+        } else if (c == '\'') {
+            state = SINGLE_QUOTED;
+        } else if (c == '/') {
+            state = SELF_CLOSING;
+        } else if (c == '>') {
+            openElement(false);
+        }
+    }
+
+    private void rawText(int c) {
+        if (toLower(c) == rawTextEnd[rawTextMatched]) {
+            if (rawTextMatched == 0) {
+                tagLine = line;
+                tagColumn = column;
+            }
+            rawTextMatched++;
+            if (rawTextMatched == rawTextEnd.length) {
+                // The name is still in the buffer from the start tag
+                state = END_NAME;
+            }
+        } else if (c == '<') {
+            tagLine = line;
+            tagColumn = column;
+            rawTextMatched = 1;
+        } else {
+            rawTextMatched = 0;
+        }
+    }
+
+    private void openElement(boolean selfClosing) {
+        String element = currentName();
+        state = TEXT;
+        if ("html".equals(element)) {
+            seenHtml = true;
+        } else if ("body".equals(element)) {
+            seenBody = true;
+        }
+        if (selfClosing || VOID_ELEMENTS.contains(element)) {
+            return;
+        }
+        open.add(new OpenElement(element, tagLine, tagColumn));
+        openCounts.computeIfAbsent(element, k -> new int[1])[0]++;
+
+        if (RAW_TEXT_ELEMENTS.contains(element)) {
+            rawTextEnd = ("</" + element).toCharArray();
+            rawTextMatched = 0;
+            state = RAW_TEXT;
+        }
+    }
+
+    private void closeElement() {
+        String element = currentName();
+        state = TEXT;
+        // The count makes an unmatched end tag O(1), so deep nesting cannot make this quadratic
+        int[] count = openCounts.get(element);
+        if (count == null || count[0] == 0) {
+            report(HtmlFinding.UNEXPECTED_END_TAG, "</" + element + "> has no open <" + element + "> to close",
+                    tagLine, tagColumn);
+            return;
+        }
+        while (true) {
+            OpenElement top = open.remove(open.size() - 1);
+            openCounts.get(top.name())[0]--;
+            if (top.name().equals(element)) {
+                return;
+            }
+            if (!OPTIONAL_END_TAG.contains(top.name())) {
+                report(HtmlFinding.UNCLOSED_TAG, "<" + top.name() + "> is not closed before </" + element + ">",
+                        top.line(), top.column());
+            }
+        }
+    }
+
+    private void report(String code, String message, int atLine, int atColumn) {
+        findingCount++;
+        if (findings.size() < MAX_FINDINGS) {
+            HtmlFinding finding = new HtmlFinding();
+            finding.setCode(code);
+            finding.setMessage(message);
+            finding.setLine(atLine);
+            finding.setColumn(atColumn);
+            findings.add(finding);
+        }
+    }
+
+    private void appendName(int c) {
+        if (nameLength < MAX_NAME_LENGTH) {
+            name[nameLength] = (char) toLower(c);
+        }
+        nameLength++;
+    }
+
+    private String currentName() {
+        int length = Math.min(nameLength, MAX_NAME_LENGTH);
+        if (length < KNOWN_NAMES.length) {
+            for (String known : KNOWN_NAMES[length]) {
+                if (matchesName(known)) {
+                    return known;
+                }
+            }
+        }
+        return new String(name, 0, length);
+    }
+
+    private boolean matchesName(String known) {
+        for (int i = 0; i < known.length(); i++) {
+            if (name[i] != known.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[][] byLength(String... names) {
+        int longest = 0;
+        for (String n : names) {
+            longest = Math.max(longest, n.length());
+        }
+        String[][] table = new String[longest + 1][];
+        for (int length = 0; length <= longest; length++) {
+            final int l = length;
+            table[length] = Arrays.stream(names).filter(n -> n.length() == l).toArray(String[]::new);
+        }
+        return table;
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isNameChar(int c) {
+        return isLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':' || c == '_' || c == '.';
+    }
+
+    private static int toLower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
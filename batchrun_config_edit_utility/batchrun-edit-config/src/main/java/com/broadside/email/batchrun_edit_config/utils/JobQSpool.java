@@ -0,0 +1,212 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.broadside.email.batchrun_edit_config.model.JobQEvent;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Append-only local spool for audit events that could not be written to the
+ * database. Events are stored one JSON object per line. Appends always go to
+ * the active file; draining first rotates it into a numbered segment so that
+ * appends never wait on the database while a segment is being replayed.
+ * Events the database will never accept are moved to a separate dead-letter
+ * file, which is kept for inspection and never replayed.
+ */
+public class JobQSpool {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQSpool.class);
+
+    private static final String ACTIVE_FILE = "jobq.spool";
+    private static final String SEGMENT_PREFIX = "jobq-";
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String DEAD_LETTER_FILE = "jobq.dead";
+
+    /**
+     * Writes a chunk of replayed events. When it fails, it may already have
+     * removed the events it did write from the front of the chunk; only the
+     * rest is kept for the next attempt.
+     */
+    @FunctionalInterface
+    public interface ChunkWriter {
+        void write(List<JobQEvent> chunk) throws Exception;
+    }
+
+    private final Path dir;
+    private final ObjectMapper mapper;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private long segmentSeq;
+
+    public JobQSpool(Path dir, ObjectMapper mapper) {
+        this.dir = dir;
+        this.mapper = mapper;
+        try {
+            pending.set(activeHasData() || !listSegments().isEmpty());
+        } catch (IOException e) {
+            logger.warn("Could not scan jobq spool directory {}: {}", dir, e.getMessage());
+        }
+    }
+
+    public boolean hasPending() {
+        return pending.get();
+    }
+
+    public synchronized void append(List<JobQEvent> events) throws IOException {
+        if (events.isEmpty()) {
+            return;
+        }
+        appendTo(ACTIVE_FILE, events);
+        pending.set(true);
+    }
+
+    /**
+     * Sets events aside in the dead-letter file, where they are never replayed.
+     */
+    public synchronized void deadLetter(List<JobQEvent> events) throws IOException {
+        appendTo(DEAD_LETTER_FILE, events);
+    }
+
+    private void appendTo(String fileName, List<JobQEvent> events) throws IOException {
+        Files.createDirectories(dir);
+        try (BufferedWriter out = Files.newBufferedWriter(dir.resolve(fileName), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (JobQEvent event : events) {
+                out.write(mapper.writeValueAsString(event));
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Replays spooled events in append order, chunkSize at a time. Returns false
+     * as soon as a chunk fails; the unwritten remainder stays on disk for the
+     * next attempt.
+     */
+    public boolean drain(int chunkSize, ChunkWriter writer) throws IOException {
+        rotate();
+        for (Path segment : listSegments()) {
+            if (!drainSegment(segment, chunkSize, writer)) {
+                return false;
+            }
+        }
+        synchronized (this) {
+            if (!activeHasData()) {
+                pending.set(false);
+            }
+        }
+        return true;
+    }
+
+    private synchronized void rotate() throws IOException {
+        if (!activeHasData()) {
+            return;
+        }
+        String name = String.format("%s%013d-%06d%s", SEGMENT_PREFIX, System.currentTimeMillis(), segmentSeq++,
+                SEGMENT_SUFFIX);
+        Files.move(dir.resolve(ACTIVE_FILE), dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean drainSegment(Path segment, int chunkSize, ChunkWriter writer) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            List<JobQEvent> chunk = new ArrayList<>(chunkSize);
+            List<String> chunkLines = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    chunk.add(mapper.readValue(line, JobQEvent.class));
+                    chunkLines.add(line);
+                } catch (Exception e) {
+                    logger.warn("Skipping unreadable jobq spool entry in {}: {}", segment.getFileName(),
+                            e.getMessage());
+                    continue;
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    if (!writeChunk(segment, chunk, chunkLines, in, writer)) {
+                        return false;
+                    }
+                    chunk.clear();
+                    chunkLines.clear();
+                }
+            }
+            if (!chunk.isEmpty() && !writeChunk(segment, chunk, chunkLines, in, writer)) {
+                return false;
+            }
+        }
+        Files.deleteIfExists(segment);
+        return true;
+    }
+
+    private boolean writeChunk(Path segment, List<JobQEvent> chunk, List<String> chunkLines, BufferedReader rest,
+            ChunkWriter writer) throws IOException {
+        int size = chunk.size();
+        try {
+            writer.write(chunk);
+            return true;
+        } catch (Exception e) {
+            logger.warn("jobq spool replay stopped at {}: {}", segment.getFileName(), e.getMessage());
+            int written = size - chunk.size();
+            keepRemainder(segment, chunkLines.subList(written, chunkLines.size()), rest);
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites the segment so it holds only the unwritten part of the failed
+     * chunk and everything after it, so events already written are not
+     * replayed twice.
+     */
+    private void keepRemainder(Path segment, List<String> chunkLines, BufferedReader rest) throws IOException {
+        Path tmp = segment.resolveSibling(segment.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (String line : chunkLines) {
+                out.write(line);
+                out.newLine();
+            }
+            String line;
+            while ((line = rest.readLine()) != null) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+        Files.move(tmp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean activeHasData() throws IOException {
+        Path active = dir.resolve(ACTIVE_FILE);
+        return Files.exists(active) && Files.size(active) > 0;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+}
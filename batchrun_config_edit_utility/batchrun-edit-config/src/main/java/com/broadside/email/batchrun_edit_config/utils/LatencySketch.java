@@ -0,0 +1,121 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mergeable quantile sketch for latencies in milliseconds. Values are counted
+ * in logarithmic buckets (DDSketch layout), so any quantile is accurate to
+ * within 1% of the true value, and two sketches merge by adding bucket counts.
+ * That lets per-minute sketches roll up into hours without the raw samples.
+ */
+public class LatencySketch {
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // Anything faster than a microsecond is counted as zero
+    private static final double MIN_VALUE = 0.001;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private final TreeMap<Integer, Long> bins = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+
+    public void add(double millis) {
+        if (millis < MIN_VALUE) {
+            zeroCount++;
+        } else {
+            bins.merge(index(millis), 1L, Long::sum);
+        }
+        count++;
+    }
+
+    public void merge(LatencySketch other) {
+        other.bins.forEach((index, n) -> bins.merge(index, n, Long::sum));
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the value at quantile q (0..1), or null if the sketch is empty.
+     */
+    public Double quantile(double q) {
+        if (count == 0) {
+            return null;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) {
+            return 0.0;
+        }
+        long seen = zeroCount;
+        for (Map.Entry<Integer, Long> bin : bins.entrySet()) {
+            seen += bin.getValue();
+            if (seen > rank) {
+                return value(bin.getKey());
+            }
+        }
+        return value(bins.lastKey());
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + bins.size() * 12);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(zeroCount);
+            out.writeInt(bins.size());
+            for (Map.Entry<Integer, Long> bin : bins.entrySet()) {
+                out.writeInt(bin.getKey());
+                out.writeLong(bin.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static LatencySketch fromBytes(byte[] data) {
+        LatencySketch sketch = new LatencySketch();
+        if (data == null || data.length == 0) {
+            return sketch;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported sketch format: " + version);
+            }
+            sketch.zeroCount = in.readLong();
+            sketch.count = sketch.zeroCount;
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                int index = in.readInt();
+                long n = in.readLong();
+                sketch.bins.put(index, n);
+                sketch.count += n;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sketch;
+    }
+
+    private static int index(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+}
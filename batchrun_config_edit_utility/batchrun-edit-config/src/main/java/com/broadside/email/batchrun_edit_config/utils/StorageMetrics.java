@@ -0,0 +1,76 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters for the disk work behind each request: a timer per operation
+ * ("batchrun.config", "batchrun.template", tagged with operation) and bytes
+ * read and written per campaign ("batchrun.storage.bytes", tagged with kind,
+ * direction and campaign). Together with the jobq database timers and
+ * Hikari's acquire time they show whether a slow request waited on the disk,
+ * the CPU or the database.
+ *
+ * Only the first metrics.campaign-tag.max campaigns seen get their own
+ * campaign tag; the rest are counted under "other", so the number of series
+ * stays bounded however many campaigns exist.
+ */
+@Component
+public class StorageMetrics {
+
+    public static final String CONFIG = "config";
+    public static final String TEMPLATE = "template";
+
+    private static final String OTHER_CAMPAIGNS = "other";
+
+    private final MeterRegistry registry;
+    private final int maxTaggedCampaigns;
+    private final Set<String> taggedCampaigns = ConcurrentHashMap.newKeySet();
+
+    public StorageMetrics(MeterRegistry registry, @Value("${metrics.campaign-tag.max:1000}") int maxTaggedCampaigns) {
+        this.registry = registry;
+        this.maxTaggedCampaigns = maxTaggedCampaigns;
+    }
+
+    /**
+     * The timer for one operation on configs or templates, e.g.
+     * timer(CONFIG, "parse").
+     */
+    public Timer timer(String kind, String operation) {
+        return Timer.builder("batchrun." + kind)
+                .description("Time spent in " + kind + " file operations")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    public void bytesRead(String kind, String campId, long bytes) {
+        count(kind, "read", campId, bytes);
+    }
+
+    public void bytesWritten(String kind, String campId, long bytes) {
+        count(kind, "written", campId, bytes);
+    }
+
+    private void count(String kind, String direction, String campId, long bytes) {
+        registry.counter("batchrun.storage.bytes", "kind", kind, "direction", direction, "campaign", campaignTag(campId))
+                .increment(bytes);
+    }
+
+    private String campaignTag(String campId) {
+        if (taggedCampaigns.contains(campId)) {
+            return campId;
+        }
+        // Racing callers may overshoot the limit by a few, which is harmless
+        if (taggedCampaigns.size() < maxTaggedCampaigns) {
+            taggedCampaigns.add(campId);
+            return campId;
+        }
+        return OTHER_CAMPAIGNS;
+    }
+}
@@ -0,0 +1,35 @@
+-- jobq audit table, range-partitioned by starttime. Daily partitions are
+-- created ahead of time and expired by JobQPartitionService.
+CREATE TABLE IF NOT EXISTS jobq (
+    id        bigserial   NOT NULL,
+    jobtype   varchar(32) NOT NULL,
+    mode      varchar(32) NOT NULL,
+    campid    text,
+    starttime timestamptz NOT NULL,
+    endtime   timestamptz,
+    request   text,
+    response  text,
+    status    varchar(32) NOT NULL,
+    uuid      varchar(36) NOT NULL,
+    updated_at timestamptz,
+    PRIMARY KEY (starttime, id)
+) PARTITION BY RANGE (starttime);
+
+ALTER TABLE jobq ADD COLUMN IF NOT EXISTS campid text;
+
+-- database time of the last write to the row; latency rollups fold ended rows
+-- in this order, so a late END still lands in its endtime bucket
+ALTER TABLE jobq ADD COLUMN IF NOT EXISTS updated_at timestamptz;
+CREATE INDEX IF NOT EXISTS jobq_updated_at_idx ON jobq (updated_at);
+
+-- END updates match on (uuid, starttime) so they touch a single partition
+CREATE INDEX IF NOT EXISTS jobq_uuid_idx ON jobq (uuid, starttime);
+
+-- keyset pagination over (starttime, id) for the /jobq history filters;
+-- the primary key covers the unfiltered case
+CREATE INDEX IF NOT EXISTS jobq_campid_idx ON jobq (campid, starttime, id);
+CREATE INDEX IF NOT EXISTS jobq_jobtype_mode_idx ON jobq (jobtype, mode, starttime, id);
+CREATE INDEX IF NOT EXISTS jobq_status_idx ON jobq (status, starttime, id);
+
+-- catches rows outside the pre-created range, e.g. a very old spool replay
+CREATE TABLE IF NOT EXISTS jobq_default PARTITION OF jobq DEFAULT;
@@ -0,0 +1,18 @@
+-- Large jobq request/response fields, stored once per distinct content.
+-- jobq.request / jobq.response hold {"$payload": "<hash>", "length": n} in their place.
+CREATE TABLE IF NOT EXISTS jobq_payload (
+    hash      char(64)    PRIMARY KEY,
+    encoding  text        NOT NULL,
+    length    integer     NOT NULL,
+    data      bytea       NOT NULL,
+    created   timestamptz NOT NULL DEFAULT now(),
+    last_seen date        NOT NULL DEFAULT current_date
+);
+
+ALTER TABLE jobq_payload ADD COLUMN IF NOT EXISTS last_seen date NOT NULL DEFAULT current_date;
+
+-- data is already gzip-compressed; skip TOAST compression attempts
+ALTER TABLE jobq_payload ALTER COLUMN data SET STORAGE EXTERNAL;
+
+-- retention deletes payloads not referenced since the cutoff
+CREATE INDEX IF NOT EXISTS jobq_payload_last_seen_idx ON jobq_payload (last_seen);
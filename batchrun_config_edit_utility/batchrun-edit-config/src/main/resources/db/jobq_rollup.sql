@@ -0,0 +1,21 @@
+-- Pre-aggregated jobq latency per MINUTE / HOUR bucket of endtime, maintained
+-- incrementally by JobQRollupService. sketch is a serialized LatencySketch.
+CREATE TABLE IF NOT EXISTS jobq_rollup (
+    granularity  varchar(8)       NOT NULL,
+    bucket_start timestamptz      NOT NULL,
+    jobtype      varchar(32)      NOT NULL,
+    mode         varchar(32)      NOT NULL,
+    status       varchar(32)      NOT NULL,
+    count        bigint           NOT NULL,
+    error_count  bigint           NOT NULL,
+    sum_ms       double precision NOT NULL,
+    max_ms       double precision NOT NULL,
+    sketch       bytea            NOT NULL,
+    PRIMARY KEY (granularity, bucket_start, jobtype, mode, status)
+);
+
+-- jobq.updated_at up to which ended rows have been folded into jobq_rollup
+CREATE TABLE IF NOT EXISTS jobq_rollup_state (
+    name      varchar(32) PRIMARY KEY,
+    watermark timestamptz NOT NULL
+);
@@ -0,0 +1,81 @@
+package com.broadside.email.batchrun_edit_config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Base for tests that run the application against template and config files
+ * on disk, without a database. They all share one temporary storage root and
+ * so one cached Spring context; each test class keeps to its own campaign ids.
+ * The root is deleted once the whole test run is over.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ExtendWith(StorageTestBase.DeleteRoot.class)
+public abstract class StorageTestBase {
+
+    protected static final Path ROOT = createRoot();
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("templ.storage.path", () -> ROOT.resolve("msgtmpl").toString());
+        registry.add("config.storage.path", () -> ROOT.resolve("conf").toString());
+        registry.add("templ.blobstore.path", () -> ROOT.resolve("blobs").toString());
+        registry.add("jobq.spool.path", () -> ROOT.resolve("spool").toString());
+        registry.add("jobq.audit.enabled", () -> "false");
+        registry.add("jobq.schema.manage", () -> "false");
+        registry.add("jobq.rollup.enabled", () -> "false");
+    }
+
+    protected static Path templateDir(String campId) {
+        return ROOT.resolve("msgtmpl").resolve(campId);
+    }
+
+    protected static Path configFile(String campId) {
+        return ROOT.resolve("conf").resolve(campId + ".conf");
+    }
+
+    private static Path createRoot() {
+        try {
+            Path root = Files.createTempDirectory("batchrun-storage");
+            Files.createDirectories(root.resolve("msgtmpl"));
+            Files.createDirectories(root.resolve("conf"));
+            return root;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Registers the root's deletion with the end of the test run, not of a
+     * test class, since the cached context keeps using it in between.
+     */
+    static class DeleteRoot implements BeforeAllCallback {
+
+        @Override
+        public void beforeAll(ExtensionContext context) {
+            context.getRoot().getStore(ExtensionContext.Namespace.GLOBAL)
+                    .computeIfAbsent(DeleteRoot.class, key -> (AutoCloseable) () -> delete(ROOT), AutoCloseable.class);
+        }
+
+        private static void delete(Path root) throws IOException {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.broadside.email.batchrun_edit_config.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.broadside.email.batchrun_edit_config.StorageTestBase;
+import com.broadside.email.batchrun_edit_config.model.BulkConfigUpdateRequest;
+import com.broadside.email.batchrun_edit_config.model.BulkConfigUpdateResult;
+import com.broadside.email.batchrun_edit_config.model.ConfigUpdateRequest;
+import com.broadside.email.batchrun_edit_config.service.ConfigService;
+import com.broadside.email.batchrun_edit_config.service.JobQService;
+import com.broadside.email.batchrun_edit_config.utils.ETags;
+import com.broadside.email.batchrun_edit_config.utils.Hashing;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Bulk config update: a full run, a PARTIAL run of If-Match hits and misses,
+ * a client that goes away mid-stream and a consumer that throws. The jobq
+ * entry is ended exactly once, and what it counts as UPDATED is exactly the
+ * set of files that were rewritten.
+ */
+class BulkUpdateTest extends StorageTestBase {
+
+    private static final String NEW_DIR = "bulk-new";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Ended> ended = new ArrayList<>();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ConfigController configController;
+
+    @Autowired
+    private ConfigService configService;
+
+    private JobQService jobQService;
+
+    private record Ended(Object summary, String status) {
+    }
+
+    @BeforeEach
+    void recordJobs() {
+        jobQService = (JobQService) ReflectionTestUtils.getField(configController, "jobQService");
+        ReflectionTestUtils.setField(configController, "jobQService", new JobQService() {
+            @Override
+            public String start(String jobType, String mode, String campId, Object requestBody) {
+                return UUID.randomUUID().toString();
+            }
+
+            @Override
+            public void end(String jobId, Object responseBody, String status) {
+                synchronized (ended) {
+                    ended.add(new Ended(responseBody, status));
+                }
+            }
+        });
+    }
+
+    @AfterEach
+    void restoreJobs() {
+        ReflectionTestUtils.setField(configController, "jobQService", jobQService);
+    }
+
+    @Test
+    void updatesEveryCampaign() throws Exception {
+        List<String> campIds = seed("bulk-full", 20);
+
+        List<JsonNode> results = bulkUpdate(campIds, null);
+
+        assertEquals(20, results.size());
+        assertTrue(results.stream().allMatch(r -> r.get("status").asString().equals(BulkConfigUpdateResult.UPDATED)));
+        Map<String, Object> summary = summary("SUCCESS");
+        assertEquals(Map.of(BulkConfigUpdateResult.UPDATED, 20), summary.get("results"));
+        assertFalse(summary.containsKey("updated"));
+        assertEquals(campIds, written(campIds));
+    }
+
+    @Test
+    void reportsPartialWhenSomeIfMatchesMiss() throws Exception {
+        List<String> campIds = seed("bulk-cas", 12);
+        Map<String, String> ifMatch = new HashMap<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < campIds.size(); i++) {
+            String campId = campIds.get(i);
+            if (i % 3 == 0) {
+                ifMatch.put(campId, ETags.strong(Hashing.sha256Hex(Files.readAllBytes(configFile(campId)))));
+                expected.add(campId);
+            } else if (i % 3 == 1) {
+                ifMatch.put(campId, "\"stale\"");
+            } else {
+                expected.add(campId);
+            }
+        }
+        Map<String, byte[]> before = contents(campIds);
+
+        List<JsonNode> results = bulkUpdate(campIds, ifMatch);
+
+        assertEquals(12, results.size());
+        Map<String, Object> summary = summary("PARTIAL");
+        assertEquals(Map.of(BulkConfigUpdateResult.UPDATED, 8, BulkConfigUpdateResult.PRECONDITION_FAILED, 4),
+                summary.get("results"));
+        assertEquals(expected, written(campIds));
+        for (JsonNode result : results) {
+            String campId = result.get("campId").asString();
+            if (result.get("status").asString().equals(BulkConfigUpdateResult.PRECONDITION_FAILED)) {
+                assertArrayEquals(before.get(campId), Files.readAllBytes(configFile(campId)));
+                assertEquals(Hashing.sha256Hex(before.get(campId)), result.get("contentHash").asString());
+            }
+        }
+    }
+
+    @Test
+    void keepsCountingWhenTheClientGoesAway() throws Exception {
+        expectAllCountedAfterWriteFailure("bulk-gone", new IOException("Broken pipe"));
+    }
+
+    @Test
+    void keepsCountingWhenWritingAResultThrows() throws Exception {
+        expectAllCountedAfterWriteFailure("bulk-bad", new UncheckedIOException(new IOException("Broken pipe")));
+    }
+
+    @Test
+    void stopsEarlyWhenTheConsumerThrows() throws Exception {
+        List<String> campIds = seed("bulk-stop", 200);
+        List<String> seen = new ArrayList<>();
+
+        assertThrows(IllegalStateException.class, () -> configService.bulkUpdate(campIds, update(), null, result -> {
+            seen.add(result.getCampId());
+            if (seen.size() == 3) {
+                throw new IllegalStateException("consumer failed");
+            }
+        }));
+
+        // Nothing is still running once it returns: what was written stays as it is
+        List<String> written = written(campIds);
+        Thread.sleep(200);
+        assertEquals(written, written(campIds));
+        assertTrue(written.containsAll(seen));
+        assertTrue(written.size() < campIds.size(), "queued campaigns must be skipped");
+    }
+
+    // The body's stream fails on its third line; every campaign is still written and counted
+    private void expectAllCountedAfterWriteFailure(String prefix, Exception failure) throws Exception {
+        List<String> campIds = seed(prefix, 40);
+        AtomicInteger lines = new AtomicInteger();
+        OutputStream failsAfterTwoLines = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                if (b == '\n' && lines.incrementAndGet() > 2) {
+                    if (failure instanceof IOException io) {
+                        throw io;
+                    }
+                    throw (RuntimeException) failure;
+                }
+            }
+        };
+
+        BulkConfigUpdateRequest request = bulkRequest(campIds, null);
+        assertThrows(IOException.class,
+                () -> configController.bulkUpdateConfigs(request).getBody().writeTo(failsAfterTwoLines));
+
+        Map<String, Object> summary = summary("SUCCESS");
+        assertEquals(Map.of(BulkConfigUpdateResult.UPDATED, 40), summary.get("results"));
+        assertTrue(summary.get("responseError").toString().contains("Broken pipe"));
+        List<String> updated = new ArrayList<>(castList(summary.get("updated")));
+        updated.sort(null);
+        assertEquals(written(campIds), updated);
+        assertEquals(campIds, updated);
+    }
+
+    private List<JsonNode> bulkUpdate(List<String> campIds, Map<String, String> ifMatch) throws Exception {
+        MvcResult started = mockMvc.perform(post("/campaign/configs/bulk-update")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsBytes(bulkRequest(campIds, ifMatch))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            results.add(mapper.readTree(line));
+        }
+        return results;
+    }
+
+    private BulkConfigUpdateRequest bulkRequest(List<String> campIds, Map<String, String> ifMatch) {
+        BulkConfigUpdateRequest request = new BulkConfigUpdateRequest();
+        request.setCampIds(campIds);
+        request.setUpdate(update());
+        request.setIfMatch(ifMatch);
+        return request;
+    }
+
+    private static ConfigUpdateRequest update() {
+        ConfigUpdateRequest update = new ConfigUpdateRequest();
+        update.setAttachmentDir(NEW_DIR);
+        return update;
+    }
+
+    // The one jobq entry of the run, with the expected status
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> summary(String status) {
+        synchronized (ended) {
+            assertEquals(1, ended.size(), "the job must end exactly once");
+            assertEquals(status, ended.get(0).status());
+            return (Map<String, Object>) ended.get(0).summary();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> castList(Object list) {
+        return (List<String>) list;
+    }
+
+    // The campaigns whose config now carries the bulk update, in campIds order
+    private static List<String> written(List<String> campIds) throws IOException {
+        List<String> written = new ArrayList<>();
+        for (String campId : campIds) {
+            if (Files.readString(configFile(campId)).contains("dir : " + NEW_DIR)) {
+                written.add(campId);
+            }
+        }
+        return written;
+    }
+
+    private static Map<String, byte[]> contents(List<String> campIds) throws IOException {
+        Map<String, byte[]> contents = new HashMap<>();
+        for (String campId : campIds) {
+            contents.put(campId, Files.readAllBytes(configFile(campId)));
+        }
+        return contents;
+    }
+
+    private static List<String> seed(String prefix, int count) throws IOException {
+        List<String> campIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String campId = String.format("%s-%03d", prefix, i);
+            Files.writeString(configFile(campId), """
+                    [constants]
+                    campid: %s
+
+                    [metadata]
+
+                    [template]
+                    path : %s/%s.html
+
+                    [msghdrs]
+
+                    [attachments]
+                    dir : a1
+
+                    [namespace]
+                    constant : campid
+                    """.formatted(campId, campId, campId), StandardCharsets.UTF_8);
+            campIds.add(campId);
+        }
+        return campIds;
+    }
+}
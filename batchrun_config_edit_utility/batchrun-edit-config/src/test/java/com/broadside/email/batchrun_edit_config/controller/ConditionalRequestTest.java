@@ -0,0 +1,165 @@
+package com.broadside.email.batchrun_edit_config.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.broadside.email.batchrun_edit_config.StorageTestBase;
+import com.broadside.email.batchrun_edit_config.utils.ETags;
+import com.broadside.email.batchrun_edit_config.utils.Hashing;
+
+/**
+ * Conditional requests on config and template: ETag and Last-Modified on
+ * 200, 304 for If-None-Match and If-Modified-Since that show the client's copy
+ * is current, and 412 for writes whose If-Match no longer holds.
+ */
+class ConditionalRequestTest extends StorageTestBase {
+
+    private static final String CONFIG = """
+            [constants]
+            campid: cond
+
+            [metadata]
+
+            [template]
+            path : cond/cond.html
+
+            [msghdrs]
+
+            [attachments]
+            dir : a1
+
+            [namespace]
+            constant : campid
+            """;
+    private static final String HTML = "<html><body>conditional</body></html>";
+    private static final Instant MODIFIED = Instant.parse("2025-12-02T14:25:30Z");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    static void seed() throws IOException {
+        Files.writeString(configFile("cond"), CONFIG, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(configFile("cond"), FileTime.from(MODIFIED));
+        Files.writeString(configFile("cas"), CONFIG.replace("cond", "cas"), StandardCharsets.UTF_8);
+        Path template = Files.createDirectories(templateDir("cond")).resolve("cond.html");
+        Files.writeString(template, HTML, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(template, FileTime.from(MODIFIED));
+    }
+
+    @Test
+    void configCarriesValidatorsAndAnswersNotModified() throws Exception {
+        expectConditionalGet("/campaign/cond/config", Hashing.sha256Hex(CONFIG));
+    }
+
+    @Test
+    void templateCarriesValidatorsAndAnswersNotModified() throws Exception {
+        expectConditionalGet("/campaign/cond/template", Hashing.sha256Hex(HTML));
+    }
+
+    @Test
+    void configWriteHonoursIfMatch() throws Exception {
+        String current = ETags.strong(Hashing.sha256Hex(Files.readAllBytes(configFile("cas"))));
+
+        MvcResult written = mockMvc.perform(put("/campaign/cas/config")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, current)
+                .content("{\"attachmentDir\": \"a2\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String updated = written.getResponse().getHeader(HttpHeaders.ETAG);
+        byte[] stored = Files.readAllBytes(configFile("cas"));
+        assertEquals(ETags.strong(Hashing.sha256Hex(stored)), updated);
+
+        mockMvc.perform(put("/campaign/cas/config")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, current)
+                .content("{\"attachmentDir\": \"a3\"}"))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string(HttpHeaders.ETAG, updated));
+        assertArrayEquals(stored, Files.readAllBytes(configFile("cas")));
+
+        mockMvc.perform(put("/campaign/cas/config")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "*")
+                .content("{\"attachmentDir\": \"a4\"}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void templateWriteHonoursIfMatch() throws Exception {
+        String first = "<html><body>first</body></html>";
+        mockMvc.perform(put("/campaign/cas/template")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "*")
+                .content("{\"htmlContent\": \"" + first + "\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(put("/campaign/cas/template")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"htmlContent\": \"" + first + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETags.strong(Hashing.sha256Hex(first))));
+
+        mockMvc.perform(put("/campaign/cas/template")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"stale\"")
+                .content("{\"htmlContent\": \"<html><body>second</body></html>\"}"))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string(HttpHeaders.ETAG, ETags.strong(Hashing.sha256Hex(first))));
+        mockMvc.perform(get("/campaign/cas/template").param("fields", "contentHash"))
+                .andExpect(jsonPath("$.contentHash").value(Hashing.sha256Hex(first)));
+    }
+
+    private void expectConditionalGet(String url, String hash) throws Exception {
+        String etag = ETags.strong(hash);
+        String modified = DateTimeFormatter.RFC_1123_DATE_TIME.format(MODIFIED.atOffset(ZoneOffset.UTC));
+        String earlier = DateTimeFormatter.RFC_1123_DATE_TIME.format(MODIFIED.minusSeconds(60).atOffset(ZoneOffset.UTC));
+
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, MODIFIED.toEpochMilli()));
+
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "W/" + etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get(url).header(HttpHeaders.IF_MODIFIED_SINCE, modified))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(url).header(HttpHeaders.IF_MODIFIED_SINCE, earlier))
+                .andExpect(status().isOk());
+        // If-None-Match takes precedence over If-Modified-Since
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "\"other\"")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, modified))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,156 @@
+package com.broadside.email.batchrun_edit_config.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.broadside.email.batchrun_edit_config.StorageTestBase;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Template download: whole file, single ranges of every form, If-Range, and
+ * that the job only ends once the body has been written.
+ */
+class TemplateDownloadTest extends StorageTestBase {
+
+    private static final String CAMP_ID = "dl";
+    private static final byte[] CONTENT = "<html><body>0123456789</body></html>".getBytes(StandardCharsets.UTF_8);
+    private static final Instant MODIFIED = Instant.parse("2025-12-02T14:25:30Z");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void seed() throws IOException {
+        Path template = Files.createDirectories(templateDir(CAMP_ID)).resolve("dl.html");
+        Files.write(template, CONTENT);
+        Files.setLastModifiedTime(template, FileTime.from(MODIFIED));
+    }
+
+    @Test
+    void downloadsTheWholeFile() throws Exception {
+        double before = downloads("SUCCESS");
+        download(null, null)
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"dl.html\""))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length))
+                .andExpect(content().bytes(CONTENT));
+        assertEquals(before + 1, downloads("SUCCESS"));
+    }
+
+    @Test
+    void servesABoundedRange() throws Exception {
+        expectRange("bytes=12-21", 12, 21);
+    }
+
+    @Test
+    void servesAnOpenEndedRange() throws Exception {
+        expectRange("bytes=5-", 5, CONTENT.length - 1);
+    }
+
+    @Test
+    void servesASuffixRange() throws Exception {
+        expectRange("bytes=-7", CONTENT.length - 7, CONTENT.length - 1);
+        expectRange("bytes=-1000", 0, CONTENT.length - 1);
+    }
+
+    @Test
+    void clampsARangeEndingPastTheFile() throws Exception {
+        expectRange("bytes=30-1000", 30, CONTENT.length - 1);
+    }
+
+    @Test
+    void rejectsARangeStartingPastTheFile() throws Exception {
+        double before = downloads("FAILED");
+        for (String range : new String[] { "bytes=" + CONTENT.length + "-", "bytes=1000-2000" }) {
+            mockMvc.perform(get(url()).header(HttpHeaders.RANGE, range))
+                    .andExpect(status().isRequestedRangeNotSatisfiable())
+                    .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + CONTENT.length));
+        }
+        assertEquals(before + 2, downloads("FAILED"));
+    }
+
+    @Test
+    void ignoresMultipleAndMalformedRanges() throws Exception {
+        download("bytes=0-1,5-6", null).andExpect(status().isOk()).andExpect(content().bytes(CONTENT));
+        download("lines=1-2", null).andExpect(status().isOk()).andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void honoursIfRangeOnlyWhileTheDateMatches() throws Exception {
+        String current = DateTimeFormatter.RFC_1123_DATE_TIME.format(MODIFIED.atOffset(ZoneOffset.UTC));
+        String stale = DateTimeFormatter.RFC_1123_DATE_TIME.format(MODIFIED.minusSeconds(60).atOffset(ZoneOffset.UTC));
+
+        download("bytes=5-", current)
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 5-" + (CONTENT.length - 1) + "/"
+                        + CONTENT.length));
+        download("bytes=5-", stale)
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().bytes(CONTENT));
+        download("bytes=5-", "W/\"weak\"").andExpect(status().isOk()).andExpect(content().bytes(CONTENT));
+    }
+
+    private void expectRange(String range, int first, int last) throws Exception {
+        byte[] expected = new byte[last - first + 1];
+        System.arraycopy(CONTENT, first, expected, 0, expected.length);
+        download(range, null)
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes " + first + "-" + last + "/"
+                        + CONTENT.length))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, expected.length))
+                .andExpect(content().bytes(expected));
+    }
+
+    private ResultActions download(String range, String ifRange) throws Exception {
+        MockHttpServletRequestBuilder builder = get(url());
+        if (range != null) {
+            builder.header(HttpHeaders.RANGE, range);
+        }
+        if (ifRange != null) {
+            builder.header(HttpHeaders.IF_RANGE, ifRange);
+        }
+        MvcResult result = mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
+    private double downloads(String status) {
+        Timer timer = meterRegistry.find("batchrun.job")
+                .tags("jobtype", "TEMPLATE", "mode", "DOWNLOAD", "status", status)
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private static String url() {
+        return "/campaign/" + CAMP_ID + "/template/download";
+    }
+}
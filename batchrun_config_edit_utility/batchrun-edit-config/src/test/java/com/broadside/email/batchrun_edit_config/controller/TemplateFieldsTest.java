@@ -0,0 +1,82 @@
+package com.broadside.email.batchrun_edit_config.controller;
+
+import static org.hamcrest.Matchers.aMapWithSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.broadside.email.batchrun_edit_config.StorageTestBase;
+import com.broadside.email.batchrun_edit_config.utils.ETags;
+import com.broadside.email.batchrun_edit_config.utils.Hashing;
+
+/**
+ * fields= projection of GET template: names are trimmed and empty ones
+ * ignored, unknown names are rejected, and conditional requests still work.
+ */
+class TemplateFieldsTest extends StorageTestBase {
+
+    private static final String HTML = "<html><body>fields</body></html>";
+    private static final String URL = "/campaign/meta/template";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    static void seed() throws IOException {
+        Path dir = Files.createDirectories(templateDir("meta"));
+        Files.writeString(dir.resolve("meta.html"), HTML, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void returnsOnlyTheNamedFields() throws Exception {
+        mockMvc.perform(get(URL).param("fields", "exists,fileSize"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", aMapWithSize(2)))
+                .andExpect(jsonPath("$.exists").value(true))
+                .andExpect(jsonPath("$.fileSize").value(HTML.length()));
+    }
+
+    @Test
+    void trimsNamesAndIgnoresEmptyOnes() throws Exception {
+        mockMvc.perform(get(URL).param("fields", " exists , contentHash,, ,"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", aMapWithSize(2)))
+                .andExpect(jsonPath("$.contentHash").value(Hashing.sha256Hex(HTML)));
+    }
+
+    @Test
+    void treatsFieldsNamingNothingAsNoProjection() throws Exception {
+        mockMvc.perform(get(URL).param("fields", " , "))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.htmlContent").value(HTML))
+                .andExpect(jsonPath("$.campId").value("meta"));
+    }
+
+    @Test
+    void rejectsUnknownFields() throws Exception {
+        mockMvc.perform(get(URL).param("fields", "exists,nope"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void answersNotModifiedWithFields() throws Exception {
+        String etag = ETags.strong(Hashing.sha256Hex(HTML));
+        mockMvc.perform(get(URL).param("fields", "contentHash"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        mockMvc.perform(get(URL).param("fields", "contentHash").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+}
@@ -0,0 +1,174 @@
+package com.broadside.email.batchrun_edit_config.controller;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMultipartHttpServletRequestBuilder;
+
+import com.broadside.email.batchrun_edit_config.StorageTestBase;
+import com.broadside.email.batchrun_edit_config.utils.ETags;
+import com.broadside.email.batchrun_edit_config.utils.Hashing;
+
+/**
+ * Streaming template upload: the stored file and response, If-Match, the
+ * size limit, and that no staging file is left behind whatever the outcome.
+ */
+class TemplateUploadTest extends StorageTestBase {
+
+    private static final int MAX_TEMPLATE_SIZE = 2 * 1024 * 1024;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void storesTheUploadAndReturnsIt() throws Exception {
+        String html = "<html><body>café</body></html>";
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+
+        upload("stored", bytes, null)
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETags.strong(Hashing.sha256Hex(bytes))))
+                .andExpect(jsonPath("$.htmlContent").doesNotExist())
+                .andExpect(jsonPath("$.fileSize").value(bytes.length))
+                .andExpect(jsonPath("$.contentHash").value(Hashing.sha256Hex(bytes)));
+
+        assertArrayEquals(bytes, Files.readAllBytes(template("stored")));
+        assertEquals(List.of("stored.html"), visibleFiles("stored"));
+    }
+
+    @Test
+    void returnsTheContentOnlyWhenAskedTo() throws Exception {
+        String html = "<html><body>echoed</body></html>";
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+        upload("echoed", "<html><body>before</body></html>".getBytes(StandardCharsets.UTF_8), null)
+                .andExpect(status().isOk());
+
+        mockMvc.perform(multipart("/campaign/echoed/template/upload")
+                .file(new MockMultipartFile("file", "echoed.html", "text/html", bytes))
+                .param("includeContent", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETags.strong(Hashing.sha256Hex(bytes))))
+                .andExpect(jsonPath("$.htmlContent").value(html))
+                .andExpect(jsonPath("$.contentHash").value(Hashing.sha256Hex(bytes)))
+                .andExpect(jsonPath("$.backupName").value(matchesPattern("echoed_\\d{8}_\\d{6}.*\\.html")));
+    }
+
+    @Test
+    void replacesTheTemplateOnlyWhileIfMatchHolds() throws Exception {
+        byte[] first = "<html><body>one</body></html>".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "<html><body>two</body></html>".getBytes(StandardCharsets.UTF_8);
+        byte[] third = "<html><body>three</body></html>".getBytes(StandardCharsets.UTF_8);
+        String firstETag = ETags.strong(Hashing.sha256Hex(first));
+        String secondETag = ETags.strong(Hashing.sha256Hex(second));
+
+        upload("match", first, null).andExpect(status().isOk());
+        upload("match", second, firstETag).andExpect(status().isOk());
+
+        upload("match", third, firstETag)
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string(HttpHeaders.ETAG, secondETag))
+                .andExpect(jsonPath("$.currentETag").value(secondETag));
+        assertArrayEquals(second, Files.readAllBytes(template("match")));
+        assertEquals(List.of("match.html"), visibleFiles("match"));
+        assertEquals(List.of(), stagingFiles("match"));
+    }
+
+    @Test
+    void namesTheBackupOfTheReplacedTemplate() throws Exception {
+        upload("backup", "<html><body>old</body></html>".getBytes(StandardCharsets.UTF_8), null)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.backupName").doesNotExist());
+
+        upload("backup", "<html><body>new</body></html>".getBytes(StandardCharsets.UTF_8), null)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hasBackup").value(true))
+                .andExpect(jsonPath("$.backupName").value(matchesPattern("backup_\\d{8}_\\d{6}.*\\.html")))
+                .andExpect(jsonPath("$.backupPath").value(ROOT.resolve("blobs").resolve("manifests")
+                        .resolve("backup.json").toString()));
+    }
+
+    @Test
+    void rejectsATemplateOverTheSizeLimit() throws Exception {
+        byte[] original = "<html><body>small</body></html>".getBytes(StandardCharsets.UTF_8);
+        upload("large", original, null).andExpect(status().isOk());
+
+        byte[] large = new byte[MAX_TEMPLATE_SIZE + 1];
+        Arrays.fill(large, (byte) 'x');
+        upload("large", large, null).andExpect(status().isBadRequest());
+
+        assertArrayEquals(original, Files.readAllBytes(template("large")));
+        assertEquals(List.of(), stagingFiles("large"));
+    }
+
+    @Test
+    void acceptsATemplateAtTheSizeLimit() throws Exception {
+        byte[] limit = new byte[MAX_TEMPLATE_SIZE];
+        Arrays.fill(limit, (byte) ' ');
+        byte[] html = "<html><body></body></html>".getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(html, 0, limit, 0, html.length);
+
+        upload("limit", limit, null).andExpect(status().isOk());
+        assertEquals(MAX_TEMPLATE_SIZE, Files.size(template("limit")));
+    }
+
+    @Test
+    void rejectsBlankAndNonHtmlUploads() throws Exception {
+        upload("blank", " \n\t ".getBytes(StandardCharsets.UTF_8), null).andExpect(status().isBadRequest());
+        assertEquals(List.of(), stagingFiles("blank"));
+
+        MockMultipartFile text = new MockMultipartFile("file", "blank.txt", "text/plain",
+                "<html></html>".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(multipart("/campaign/blank/template/upload").file(text)).andExpect(status().isBadRequest());
+        assertEquals(List.of(), visibleFiles("blank"));
+    }
+
+    private ResultActions upload(String campId, byte[] content, String ifMatch) throws Exception {
+        MockMultipartHttpServletRequestBuilder request = multipart("/campaign/" + campId + "/template/upload")
+                .file(new MockMultipartFile("file", campId + ".html", "text/html", content));
+        if (ifMatch != null) {
+            request.header(HttpHeaders.IF_MATCH, ifMatch);
+        }
+        return mockMvc.perform(request);
+    }
+
+    private static Path template(String campId) {
+        return templateDir(campId).resolve(campId + ".html");
+    }
+
+    private static List<String> visibleFiles(String campId) throws IOException {
+        return files(campId).stream().filter(name -> !name.startsWith(".")).toList();
+    }
+
+    private static List<String> stagingFiles(String campId) throws IOException {
+        return files(campId).stream().filter(name -> name.endsWith(".tmp")).toList();
+    }
+
+    private static List<String> files(String campId) throws IOException {
+        Path dir = templateDir(campId);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+    }
+}
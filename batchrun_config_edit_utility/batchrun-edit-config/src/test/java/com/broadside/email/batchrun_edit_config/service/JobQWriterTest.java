@@ -0,0 +1,252 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.broadside.email.batchrun_edit_config.dao.JobQDao;
+import com.broadside.email.batchrun_edit_config.model.JobQEvent;
+import com.broadside.email.batchrun_edit_config.utils.JobQSpool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * The jobq writer against a stub database: batching, spooling while the
+ * database is down and replaying afterwards, dead-lettering rejected events,
+ * START/END order when the queue overflows, and a shutdown that outlasts
+ * its timeout.
+ */
+class JobQWriterTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private final StubDao dao = new StubDao();
+    private JobQWriter writer;
+
+    @AfterEach
+    void stop() {
+        if (writer != null) {
+            writer.stopWorker();
+        }
+    }
+
+    @Test
+    void writesSubmittedEventsInOrder() throws Exception {
+        start(100);
+        List<JobQEvent> events = jobs(20);
+        events.forEach(writer::submit);
+
+        await(() -> dao.written().size() == events.size());
+        assertEquals(uuidsAndTypes(events), uuidsAndTypes(dao.written()));
+    }
+
+    @Test
+    void spoolsWhileTheDatabaseIsDownAndReplaysInOrder() throws Exception {
+        start(100);
+        dao.failWith = new SQLException("connection refused", "08001");
+        List<JobQEvent> events = jobs(10);
+        events.forEach(writer::submit);
+
+        await(() -> Files.exists(spoolDir.resolve("jobq.spool")));
+        assertEquals(List.of(), dao.written());
+
+        dao.failWith = null;
+        await(() -> dao.written().size() == events.size());
+        assertEquals(uuidsAndTypes(events), uuidsAndTypes(dao.written()));
+    }
+
+    @Test
+    void deadLettersOnlyTheEventsTheDatabaseRejects() throws Exception {
+        start(100);
+        dao.rejectedUuids.add("job-3");
+        List<JobQEvent> events = jobs(6);
+        events.forEach(writer::submit);
+
+        await(() -> dao.written().size() == events.size() - 2);
+        assertFalse(dao.written().stream().anyMatch(event -> event.getUuid().equals("job-3")));
+        await(() -> Files.exists(spoolDir.resolve("jobq.dead")));
+        assertEquals(2, Files.readAllLines(spoolDir.resolve("jobq.dead")).size());
+    }
+
+    @Test
+    void overflowKeepsEachEndBehindItsStart() throws Exception {
+        start(2);
+        dao.gate = new CountDownLatch(1);
+        List<JobQEvent> events = jobs(200);
+
+        long started = System.nanoTime();
+        events.forEach(writer::submit);
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1), "submit must not block");
+
+        dao.gate.countDown();
+        await(() -> dao.written().size() == events.size());
+
+        Set<String> startedJobs = new HashSet<>();
+        for (JobQEvent event : dao.written()) {
+            if (event.getType() == JobQEvent.Type.START) {
+                startedJobs.add(event.getUuid());
+            } else {
+                assertTrue(startedJobs.contains(event.getUuid()), "END before START for " + event.getUuid());
+            }
+        }
+    }
+
+    @Test
+    void shutdownLeavesTheSpoolToAWorkerStuckInTheDatabase() throws Exception {
+        start(100);
+        ReflectionTestUtils.setField(writer, "shutdownTimeoutMs", 50L);
+        dao.failWith = new SQLException("connection reset", "08006");
+        dao.stuck = new CountDownLatch(1);
+        List<JobQEvent> events = jobs(5);
+        events.forEach(writer::submit);
+        await(() -> dao.writers.get() > 0);
+
+        Thread release = new Thread(() -> {
+            sleep(300);
+            dao.stuck.countDown();
+        });
+        release.start();
+        writer.stopWorker();
+        writer = null;
+        release.join();
+
+        // The batch in flight is spooled first, then the rest, by the worker alone
+        List<JobQEvent> spooled = new ArrayList<>();
+        assertTrue(new JobQSpool(spoolDir, new ObjectMapper()).drain(100, spooled::addAll));
+        assertEquals(uuidsAndTypes(events), uuidsAndTypes(spooled));
+    }
+
+    private void start(int queueCapacity) {
+        writer = new JobQWriter();
+        ReflectionTestUtils.setField(writer, "jobQDao", dao);
+        ReflectionTestUtils.setField(writer, "partitionService", new JobQPartitionService() {
+            @Override
+            public synchronized void ensureReady() {
+            }
+        });
+        ReflectionTestUtils.setField(writer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writer, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(writer, "batchSize", 4);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 10L);
+        ReflectionTestUtils.setField(writer, "queryTimeoutSeconds", 1);
+        ReflectionTestUtils.setField(writer, "retryIntervalMs", 20L);
+        ReflectionTestUtils.setField(writer, "shutdownTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(writer, "storedPayloadCacheSize", 100);
+        ReflectionTestUtils.setField(writer, "spoolPath", spoolDir.toString());
+        writer.startWorker();
+    }
+
+    // START and END of job-0, job-1, ... each END right after its START
+    private static List<JobQEvent> jobs(int count) {
+        List<JobQEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            JobQEvent start = JobQEvent.start("job-" + i, "CONFIG", "GET", "c" + i, "{}");
+            events.add(start);
+            events.add(JobQEvent.end("job-" + i, start.getTime(), "{}", "SUCCESS"));
+        }
+        return events;
+    }
+
+    private static List<String> uuidsAndTypes(List<JobQEvent> events) {
+        return events.stream().map(event -> event.getUuid() + " " + event.getType()).toList();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Records written events. Fails every batch with failWith while set, and
+     * any batch holding an event of a rejectedUuids job with a constraint
+     * violation; waits for gate before the first write when one is set, and
+     * for stuck without heeding interrupts, like a blocked JDBC call.
+     */
+    private static class StubDao extends JobQDao {
+
+        volatile SQLException failWith;
+        volatile CountDownLatch gate;
+        volatile CountDownLatch stuck;
+        final AtomicInteger writers = new AtomicInteger();
+        final Set<String> rejectedUuids = Collections.synchronizedSet(new HashSet<>());
+        private final List<JobQEvent> written = new ArrayList<>();
+
+        StubDao() {
+            super(null, new SimpleMeterRegistry());
+        }
+
+        @Override
+        public void writeBatch(List<JobQEvent> events, int queryTimeoutSeconds) throws SQLException {
+            writers.incrementAndGet();
+            CountDownLatch blocked = stuck;
+            boolean interrupted = false;
+            while (blocked != null && blocked.getCount() > 0) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            CountDownLatch latch = gate;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("interrupted", "57014");
+                }
+            }
+            if (failWith != null) {
+                throw failWith;
+            }
+            for (JobQEvent event : events) {
+                if (rejectedUuids.contains(event.getUuid())) {
+                    throw new SQLException("null value in column \"jobtype\"", "23502");
+                }
+            }
+            synchronized (written) {
+                written.addAll(events);
+            }
+        }
+
+        List<JobQEvent> written() {
+            synchronized (written) {
+                return new ArrayList<>(written);
+            }
+        }
+    }
+}
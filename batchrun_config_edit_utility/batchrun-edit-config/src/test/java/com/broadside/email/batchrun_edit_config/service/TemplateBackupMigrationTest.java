@@ -0,0 +1,73 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.broadside.email.batchrun_edit_config.StorageTestBase;
+import com.broadside.email.batchrun_edit_config.model.TemplateBackup;
+
+/**
+ * Legacy backups/ files: left alone by reads, copied into the store only when
+ * asked, kept on disk without a retention policy, and not copied twice.
+ */
+class TemplateBackupMigrationTest extends StorageTestBase {
+
+    private static final Instant SAVED = Instant.parse("2025-01-01T12:00:00Z");
+
+    @Autowired
+    private TemplateService templateService;
+
+    @Autowired
+    private TemplateBackupService backupService;
+
+    @Test
+    void readsLeaveLegacyBackupsAlone() throws IOException {
+        Path legacy = writeLegacy("legacy-read");
+
+        templateService.getTemplate("legacy-read");
+        assertEquals(List.of(), templateService.listBackups("legacy-read"));
+        assertTrue(Files.exists(legacy));
+    }
+
+    @Test
+    void migratesOnRequestAndKeepsTheFiles() throws IOException {
+        Path legacy = writeLegacy("legacy-run");
+
+        assertEquals(1, templateService.migrateLegacyBackups("legacy-run"));
+
+        List<TemplateBackup> backups = templateService.listBackups("legacy-run");
+        assertEquals(1, backups.size());
+        TemplateBackup backup = backups.get(0);
+        assertEquals("legacy-run_20250101_120000.html", backup.getName());
+        assertEquals("legacy-run.html", backup.getSourceName());
+        assertEquals(SAVED.toString(), backup.getCreatedAt());
+        assertArrayEquals(Files.readAllBytes(legacy), backupService.readBackup(backup));
+        assertTrue(Files.exists(legacy));
+
+        // The kept file is recognised as already migrated
+        assertEquals(0, templateService.migrateLegacyBackups("legacy-run"));
+        assertEquals(1, templateService.listBackups("legacy-run").size());
+    }
+
+    private static Path writeLegacy(String campId) throws IOException {
+        Path dir = Files.createDirectories(templateDir(campId).resolve("backups"));
+        Files.writeString(templateDir(campId).resolve(campId + ".html"), "<html><body>live</body></html>",
+                StandardCharsets.UTF_8);
+        Path legacy = dir.resolve(campId + "_20250101_120000.html");
+        Files.writeString(legacy, "<html><body>old</body></html>", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(legacy, FileTime.from(SAVED));
+        return legacy;
+    }
+}
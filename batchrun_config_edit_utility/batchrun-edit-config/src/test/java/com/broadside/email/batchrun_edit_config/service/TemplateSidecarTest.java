@@ -0,0 +1,144 @@
+package com.broadside.email.batchrun_edit_config.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.broadside.email.batchrun_edit_config.StorageTestBase;
+import com.broadside.email.batchrun_edit_config.model.TemplateSidecar;
+import com.broadside.email.batchrun_edit_config.model.TemplateView;
+import com.broadside.email.batchrun_edit_config.utils.Hashing;
+
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * The template sidecar: trusted while the template's size and lastModified
+ * match it, ignored (and rewritten) as soon as either differs, and written by
+ * the service's own updates.
+ */
+class TemplateSidecarTest extends StorageTestBase {
+
+    private static final String SIDECAR = ".template-meta.json";
+    private static final String FAKE_HASH = "f".repeat(64);
+    private static final Instant MODIFIED = Instant.parse("2025-12-02T14:25:30Z");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private TemplateService templateService;
+
+    @Test
+    void trustsASidecarThatMatchesTheFile() throws IOException {
+        String html = "<html><body>trusted</body></html>";
+        writeTemplate("trusted", html, MODIFIED);
+        writeSidecar("trusted", html.length(), MODIFIED, FAKE_HASH);
+
+        // The sidecar's hash can only come back if the file was not hashed again
+        assertEquals(FAKE_HASH, templateService.getTemplateMeta("trusted").getContentHash());
+        TemplateView full = templateService.getTemplate("trusted");
+        assertEquals(html, full.getHtmlContent());
+        assertEquals(FAKE_HASH, full.getContentHash());
+    }
+
+    @Test
+    void trustsASidecarWithFieldsItNoLongerWrites() throws IOException {
+        String html = "<html><body>older</body></html>";
+        writeTemplate("older", html, MODIFIED);
+        Files.writeString(templateDir("older").resolve(SIDECAR), """
+                {"size": %d, "lastModified": "%s", "contentHash": "%s", "findings": [], "backupCount": 3}
+                """.formatted(html.length(), MODIFIED, FAKE_HASH), StandardCharsets.UTF_8);
+
+        assertEquals(FAKE_HASH, templateService.getTemplateMeta("older").getContentHash());
+    }
+
+    @Test
+    void ignoresASidecarWhoseSizeDiffers() throws IOException {
+        String html = "<html><body>resized</body></html>";
+        writeTemplate("resized", html, MODIFIED);
+        writeSidecar("resized", html.length() + 1, MODIFIED, FAKE_HASH);
+
+        assertEquals(Hashing.sha256Hex(html), templateService.getTemplateMeta("resized").getContentHash());
+        assertEquals(Hashing.sha256Hex(html), readSidecar("resized").getContentHash());
+    }
+
+    @Test
+    void ignoresASidecarWhoseLastModifiedDiffers() throws IOException {
+        String html = "<html><body>touched</body></html>";
+        writeTemplate("touched", html, MODIFIED.plusSeconds(1));
+        writeSidecar("touched", html.length(), MODIFIED, FAKE_HASH);
+
+        assertEquals(Hashing.sha256Hex(html), templateService.getTemplateMeta("touched").getContentHash());
+        TemplateSidecar refreshed = readSidecar("touched");
+        assertEquals(Hashing.sha256Hex(html), refreshed.getContentHash());
+        assertEquals(MODIFIED.plusSeconds(1).toString(), refreshed.getLastModified());
+    }
+
+    @Test
+    void ignoresAnUnreadableSidecar() throws IOException {
+        String html = "<html><body>garbled</body></html>";
+        writeTemplate("garbled", html, MODIFIED);
+        Files.writeString(templateDir("garbled").resolve(SIDECAR), "{not json", StandardCharsets.UTF_8);
+
+        assertEquals(Hashing.sha256Hex(html), templateService.getTemplateMeta("garbled").getContentHash());
+    }
+
+    @Test
+    void seesAnExternalEditOfTheSameSize() throws IOException {
+        String before = "<html><body>before</body></html>";
+        String after = "<html><body>after!</body></html>";
+        assertEquals(before.length(), after.length());
+        writeTemplate("edited", before, MODIFIED);
+        assertEquals(Hashing.sha256Hex(before), templateService.getTemplateMeta("edited").getContentHash());
+
+        writeTemplate("edited", after, MODIFIED.plusSeconds(60));
+        assertEquals(Hashing.sha256Hex(after), templateService.getTemplateMeta("edited").getContentHash());
+        assertEquals(Hashing.sha256Hex(after), readSidecar("edited").getContentHash());
+    }
+
+    @Test
+    void updatesWriteTheSidecar() throws IOException {
+        String html = "<html><body>written</body></html>";
+        templateService.updateTemplateFromStream("written",
+                new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), false, null);
+
+        TemplateSidecar sidecar = readSidecar("written");
+        Path template = templateDir("written").resolve("written.html");
+        assertEquals(Hashing.sha256Hex(html), sidecar.getContentHash());
+        assertEquals(Files.size(template), sidecar.getSize());
+        assertEquals(Files.getLastModifiedTime(template).toInstant().toString(), sidecar.getLastModified());
+        assertEquals(List.of(), sidecar.getFindings());
+        assertTrue(templateService.getTemplateMeta("written").isValidHtml());
+        assertFalse(Files.exists(templateDir("written").resolve("backups")));
+    }
+
+    private void writeTemplate(String campId, String html, Instant modified) throws IOException {
+        Path template = Files.createDirectories(templateDir(campId)).resolve(campId + ".html");
+        Files.writeString(template, html, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(template, FileTime.from(modified));
+    }
+
+    private void writeSidecar(String campId, long size, Instant modified, String hash) throws IOException {
+        TemplateSidecar sidecar = new TemplateSidecar();
+        sidecar.setSize(size);
+        sidecar.setLastModified(modified.toString());
+        sidecar.setContentHash(hash);
+        sidecar.setFindings(List.of());
+        Files.write(templateDir(campId).resolve(SIDECAR), mapper.writeValueAsBytes(sidecar));
+    }
+
+    private TemplateSidecar readSidecar(String campId) throws IOException {
+        return mapper.readValue(Files.readAllBytes(templateDir(campId).resolve(SIDECAR)), TemplateSidecar.class);
+    }
+}
@@ -0,0 +1,127 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Temp-file-and-rename writes: content, permissions, cleanup, and that a
+ * concurrent reader only ever sees a whole version.
+ */
+class AtomicFilesTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesNewAndReplacesExistingFiles() throws IOException {
+        Path target = dir.resolve("c1.conf");
+        AtomicFiles.write(target, bytes("first"));
+        assertArrayEquals(bytes("first"), Files.readAllBytes(target));
+
+        AtomicFiles.write(target, bytes("second, longer"));
+        assertArrayEquals(bytes("second, longer"), Files.readAllBytes(target));
+        assertEquals(List.of("c1.conf"), files());
+    }
+
+    @Test
+    void tempFilesAreHiddenSiblingsThatScansIgnore() {
+        Path target = dir.resolve("c1.html");
+        Path tmp = AtomicFiles.tempFileFor(target);
+
+        assertEquals(dir.toAbsolutePath(), tmp.getParent());
+        assertTrue(tmp.getFileName().toString().startsWith(".c1.html."));
+        assertTrue(tmp.getFileName().toString().endsWith(".tmp"));
+        assertNotEquals(tmp, AtomicFiles.tempFileFor(target));
+    }
+
+    @Test
+    void promoteKeepsTheTargetsPermissions() throws IOException {
+        assumeTrue(Files.getFileAttributeView(dir, PosixFileAttributeView.class) != null);
+        Path target = dir.resolve("c1.conf");
+        Files.write(target, bytes("old"));
+        Files.setPosixFilePermissions(target, PosixFilePermissions.fromString("rw-rw----"));
+
+        Path tmp = AtomicFiles.tempFileFor(target);
+        Files.write(tmp, bytes("new"));
+        Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+        AtomicFiles.promote(tmp, target);
+
+        assertArrayEquals(bytes("new"), Files.readAllBytes(target));
+        assertEquals("rw-rw----", PosixFilePermissions.toString(Files.getPosixFilePermissions(target)));
+        assertFalse(Files.exists(tmp));
+
+        AtomicFiles.write(target, bytes("newer"));
+        assertEquals("rw-rw----", PosixFilePermissions.toString(Files.getPosixFilePermissions(target)));
+    }
+
+    @Test
+    void failedWriteLeavesTheTargetAndNoTempFile() throws IOException {
+        Path missingDir = dir.resolve("missing").resolve("c1.conf");
+        assertThrows(NoSuchFileException.class, () -> AtomicFiles.write(missingDir, bytes("x")));
+
+        Path target = dir.resolve("c1.conf");
+        Files.write(target, bytes("kept"));
+        Path tmp = AtomicFiles.tempFileFor(target);
+        assertThrows(NoSuchFileException.class, () -> AtomicFiles.promote(tmp, target));
+        assertArrayEquals(bytes("kept"), Files.readAllBytes(target));
+        assertEquals(List.of("c1.conf"), files());
+    }
+
+    @Test
+    void readersNeverSeeAPartialFile() throws Exception {
+        Path target = dir.resolve("c1.conf");
+        byte[] a = bytes("a".repeat(256 * 1024));
+        byte[] b = bytes("b".repeat(128 * 1024));
+        AtomicFiles.write(target, a);
+
+        AtomicBoolean done = new AtomicBoolean();
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                for (int i = 0; i < 50; i++) {
+                    AtomicFiles.write(target, i % 2 == 0 ? b : a);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                done.set(true);
+            }
+        });
+        while (!done.get()) {
+            byte[] read = Files.readAllBytes(target);
+            assertTrue(read.length == a.length || read.length == b.length, "partial read of " + read.length);
+            assertArrayEquals(read.length == a.length ? a : b, read);
+        }
+        writer.get();
+        assertEquals(List.of("c1.conf"), files());
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+    }
+}
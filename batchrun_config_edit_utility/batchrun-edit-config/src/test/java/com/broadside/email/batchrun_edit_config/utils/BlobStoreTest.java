@@ -0,0 +1,144 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Put, dedupe, corruption detection and sweep of the template blob store.
+ */
+class BlobStoreTest {
+
+    private static final Instant LONG_AGO = Instant.now().minus(Duration.ofDays(1));
+
+    @TempDir
+    Path root;
+
+    @Test
+    void storesContentOnceAndReadsItBack() throws IOException {
+        BlobStore store = new BlobStore(root);
+        byte[] content = "<html>hello</html>".getBytes(StandardCharsets.UTF_8);
+
+        String hash = store.put(content);
+        assertEquals(Hashing.sha256Hex(content), hash);
+        assertEquals(hash, store.put(content.clone()));
+
+        assertEquals(1, blobFiles().size());
+        assertArrayEquals(content, store.get(hash));
+    }
+
+    @Test
+    void touchReportsMissingBlobs() throws IOException {
+        BlobStore store = new BlobStore(root);
+        String hash = store.put(new byte[] { 1, 2, 3 });
+
+        assertTrue(store.touch(hash));
+        assertFalse(store.touch(Hashing.sha256Hex(new byte[] { 4 })));
+        assertThrows(NoSuchFileException.class, () -> store.get(Hashing.sha256Hex(new byte[] { 4 })));
+        assertThrows(IllegalArgumentException.class, () -> store.touch("../etc/passwd"));
+    }
+
+    @Test
+    void rejectsBlobThatDoesNotMatchItsHash() throws IOException {
+        BlobStore store = new BlobStore(root);
+        String hash = store.put("original".getBytes(StandardCharsets.UTF_8));
+        Files.write(blobFiles().get(0), Compression.gzip("tampered".getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(IOException.class, () -> store.get(hash));
+    }
+
+    @Test
+    void rejectsBlobThatIsNotGzip() throws IOException {
+        BlobStore store = new BlobStore(root);
+        String hash = store.put("original".getBytes(StandardCharsets.UTF_8));
+        Files.write(blobFiles().get(0), "plain".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> store.get(hash));
+    }
+
+    @Test
+    void sweepDeletesOnlyOldUnreferencedBlobs() throws IOException {
+        BlobStore store = new BlobStore(root);
+        String referenced = store.put("referenced".getBytes(StandardCharsets.UTF_8));
+        String orphan = store.put("orphan".getBytes(StandardCharsets.UTF_8));
+        String recent = store.put("recent".getBytes(StandardCharsets.UTF_8));
+        age(referenced);
+        age(orphan);
+
+        Path leftover = root.resolve("ab").resolve(".leftover.gz.1234.tmp");
+        Files.createDirectories(leftover.getParent());
+        Files.write(leftover, new byte[] { 0 });
+        Files.setLastModifiedTime(leftover, FileTime.from(LONG_AGO));
+
+        int deleted = store.sweep(Set.of(referenced), Instant.now().minus(Duration.ofHours(1)));
+
+        assertEquals(1, deleted);
+        assertTrue(store.touch(referenced));
+        assertFalse(store.touch(orphan));
+        assertTrue(store.touch(recent));
+        assertFalse(Files.exists(leftover));
+    }
+
+    @Test
+    void touchedBlobSurvivesSweep() throws IOException {
+        BlobStore store = new BlobStore(root);
+        String hash = store.put("in use again".getBytes(StandardCharsets.UTF_8));
+        age(hash);
+
+        assertTrue(store.touch(hash));
+        assertEquals(0, store.sweep(Set.of(), Instant.now().minus(Duration.ofHours(1))));
+        assertTrue(store.touch(hash));
+    }
+
+    @Test
+    void putRacingWithSweepNeverLosesTheBlob() throws Exception {
+        BlobStore store = new BlobStore(root);
+        byte[] content = "raced".getBytes(StandardCharsets.UTF_8);
+        Instant cutoff = Instant.now().minus(Duration.ofHours(1));
+
+        for (int i = 0; i < 200; i++) {
+            String hash = store.put(content);
+            age(hash);
+            CompletableFuture<Integer> sweep = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return store.sweep(Set.of(), cutoff);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            // Whether the sweep deleted the old copy or not, put's result must be readable
+            assertEquals(hash, store.put(content));
+            sweep.get();
+            assertArrayEquals(content, store.get(hash));
+        }
+    }
+
+    private void age(String hash) throws IOException {
+        Path blob = root.resolve(hash.substring(0, 2)).resolve(hash + ".gz");
+        Files.setLastModifiedTime(blob, FileTime.from(LONG_AGO));
+    }
+
+    private List<Path> blobFiles() throws IOException {
+        try (Stream<Path> stream = Files.walk(root)) {
+            return stream.filter(path -> path.getFileName().toString().endsWith(".gz")).toList();
+        }
+    }
+}
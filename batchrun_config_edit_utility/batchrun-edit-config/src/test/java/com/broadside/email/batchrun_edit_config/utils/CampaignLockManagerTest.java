@@ -0,0 +1,77 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Striped per-campaign locks: one lock per campaign, campaigns spread over
+ * the stripes, and writers of one campaign serialized.
+ */
+class CampaignLockManagerTest {
+
+    @Test
+    void sameCampaignAlwaysGetsTheSameLock() {
+        CampaignLockManager locks = new CampaignLockManager(64);
+        assertSame(locks.lockFor("summer2024"), locks.lockFor("summer2024"));
+        assertSame(locks.lockFor("summer2024"), locks.lockFor(new String("summer2024")));
+    }
+
+    @Test
+    void campaignsSpreadOverEveryStripe() {
+        CampaignLockManager locks = new CampaignLockManager(64);
+        Set<Lock> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 5000; i++) {
+            used.add(locks.lockFor("camp" + i));
+        }
+        assertEquals(64, used.size());
+
+        // Sequential ids must not pile onto a few stripes
+        int[] perStripe = new int[64];
+        List<Lock> order = new ArrayList<>(used);
+        for (int i = 0; i < 6400; i++) {
+            perStripe[order.indexOf(locks.lockFor(String.format("c%05d", i)))]++;
+        }
+        for (int count : perStripe) {
+            assertTrue(count > 50 && count < 150, "uneven stripe load " + count);
+        }
+    }
+
+    @Test
+    void singleStripeSharesOneLock() {
+        CampaignLockManager locks = new CampaignLockManager(1);
+        assertSame(locks.lockFor("a"), locks.lockFor("b"));
+    }
+
+    @Test
+    void serializesWritersOfOneCampaign() throws Exception {
+        CampaignLockManager locks = new CampaignLockManager(64);
+        int[] counter = { 0 };
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    Lock lock = locks.lockFor("shared");
+                    lock.lock();
+                    try {
+                        counter[0]++;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }));
+        }
+        CompletableFuture.allOf(writers.toArray(CompletableFuture[]::new)).get();
+        assertEquals(80_000, counter[0]);
+    }
+}
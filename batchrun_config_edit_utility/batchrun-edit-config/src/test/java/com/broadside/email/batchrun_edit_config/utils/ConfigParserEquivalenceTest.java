@@ -0,0 +1,163 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.broadside.email.batchrun_edit_config.model.ConfigView;
+
+/**
+ * Checks that the single-pass ConfigParser produces exactly the ConfigView the
+ * line-based parser did, for realistic configs and for generated noise.
+ */
+class ConfigParserEquivalenceTest {
+
+    private static final String[] SECTIONS = {
+            "[constants]", "[CONSTANTS]", "[metadata]", "[MetaData]", "[template]", "[msghdrs]", "[MsgHdrs]",
+            "[attachments]", "[namespace]", "[ namespace ]", "[unknown]", "[]", "[", "]", "[metadata",
+            "[templ\u00e4te]", "[msgh\u0130drs]", "[nam\u212Aspace]", "\uFEFF[constants]"
+    };
+
+    private static final String[] KEYS = {
+            "campid", "CampId", "camp id", "campİd", "campıd", "column", "COLUMN", "columns", "col", "path",
+            "Path", "pathname", "dir", "DIR", "directory", "di", "constant", "CONSTANT", "const", "From", "To",
+            "Reply-To", "Subject", "X-Ünïcode", "dİr", "\u212Aey", "#column", ""
+    };
+
+    private static final String[] VALUES = {
+            "", "x", "USERID", "PAN", "137783_FSN_BOUNCE_pdf/137783_FSN.htm", "evoting@nsdl.com", "nsdl/ajay",
+            "campid", "a:b:c", "  padded  ", "h\u00e9llo w\u00f6rld", "\u65e5\u672c\u8a9e", "\uD83D\uDE00 emoji",
+            "tab\tinside", "\u00a0nbsp\u00a0", "\u2028sep"
+    };
+
+    private static final String[] SEPARATORS = { ":", " : ", "\t:\t", "     :", "::", " ", "" };
+
+    private static final String[] LINE_BREAKS = { "\n", "\r\n", "\r", "\n\n", "\r\r\n" };
+
+    private static final String[] PADDING = { "", " ", "\t", "  \t ", "\u0001", "\u000b\f" };
+
+    private final LegacyConfigParser legacy = new LegacyConfigParser();
+    private final ConfigParser parser = new ConfigParser();
+
+    @Test
+    void parsesSampleConfigIdentically() {
+        String sample = """
+                # constants used by metadata section
+                [constants]
+                campid: 137783_FSN_BOUNCE_pdf
+
+                # the metadata section
+                [metadata]
+                column : USERID
+                column : PAN
+                column : EMAIL
+
+                # message template relative path
+                [template]
+                path : 137783_FSN_BOUNCE_pdf/137783_FSN.htm
+
+                # message headers
+                [msghdrs]
+                From     :evoting@nsdl.com
+                Subject  : Your statement: April
+                Reply-To : noreply@nsdl.com
+
+                # attachment dir relative path
+                [attachments]
+                dir : nsdl/ajay
+
+                # namespace for memcached
+                [namespace]
+                constant : campid
+                """;
+        assertSameView(sample.getBytes(StandardCharsets.UTF_8));
+        assertSameView(sample.replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8));
+        assertSameView(new byte[0]);
+    }
+
+    @Test
+    void parsesGeneratedConfigsIdentically() {
+        Random random = new Random(20240611L);
+        for (int i = 0; i < 20_000; i++) {
+            assertSameView(generateConfig(random));
+        }
+    }
+
+    @Test
+    void parsesRandomBytesIdentically() {
+        Random random = new Random(42L);
+        byte[] alphabet = "[]:#\r\n\t campidCOLUMNpathdirconstantmsghdrs".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 20_000; i++) {
+            byte[] content = new byte[random.nextInt(200)];
+            for (int j = 0; j < content.length; j++) {
+                content[j] = random.nextInt(3) == 0 ? (byte) random.nextInt(256)
+                        : alphabet[random.nextInt(alphabet.length)];
+            }
+            assertSameView(content);
+        }
+    }
+
+    private byte[] generateConfig(Random random) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int lines = random.nextInt(30);
+        for (int i = 0; i < lines; i++) {
+            write(out, pick(random, PADDING));
+            switch (random.nextInt(6)) {
+                case 0 -> write(out, pick(random, SECTIONS));
+                case 1 -> write(out, "# " + pick(random, KEYS) + " : " + pick(random, VALUES));
+                case 2 -> {
+                    // Malformed UTF-8 right next to the separator and at the end of the value
+                    write(out, pick(random, KEYS));
+                    writeGarbage(out, random);
+                    write(out, pick(random, SEPARATORS));
+                    writeGarbage(out, random);
+                    write(out, pick(random, VALUES));
+                    writeGarbage(out, random);
+                }
+                default -> write(out, pick(random, KEYS) + pick(random, SEPARATORS) + pick(random, VALUES));
+            }
+            write(out, pick(random, PADDING));
+            if (i < lines - 1 || random.nextBoolean()) {
+                write(out, pick(random, LINE_BREAKS));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeGarbage(ByteArrayOutputStream out, Random random) {
+        if (random.nextInt(3) != 0) {
+            return;
+        }
+        int length = 1 + random.nextInt(3);
+        for (int i = 0; i < length; i++) {
+            out.write(0x80 + random.nextInt(0x80));
+        }
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        out.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String pick(Random random, String[] options) {
+        return options[random.nextInt(options.length)];
+    }
+
+    private void assertSameView(byte[] content) {
+        ConfigView expected = legacy.parse(content, "camp1");
+        ConfigView actual = parser.parse(content, "camp1");
+        assertEquals(expected, actual, () -> "Mismatch for content: " + escape(content));
+    }
+
+    private static String escape(byte[] content) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : content) {
+            int c = b & 0xff;
+            sb.append(c >= 0x20 && c < 0x7f ? String.valueOf((char) c) : String.format("\\x%02x", c));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * ETag and Last-Modified validators derived from the stored content, and
+ * If-Match evaluation for compare-and-swap writes.
+ */
+class ETagsTest {
+
+    @Test
+    void strongTagQuotesTheHash() {
+        assertEquals("\"abc123\"", ETags.strong("abc123"));
+    }
+
+    @Test
+    void lastModifiedIsEpochMillisOrMinusOne() {
+        assertEquals(1764685530512L, ETags.lastModifiedMillis("2025-12-02T14:25:30.512Z"));
+        assertEquals(-1, ETags.lastModifiedMillis(null));
+        assertEquals(-1, ETags.lastModifiedMillis(""));
+    }
+
+    @Test
+    void missingIfMatchAlwaysMatches() {
+        assertTrue(ETags.matches(null, "abc"));
+        assertTrue(ETags.matches(null, null));
+        assertTrue(ETags.matches("  ", "abc"));
+    }
+
+    @Test
+    void starMatchesOnlyExistingContent() {
+        assertTrue(ETags.matches("*", "abc"));
+        assertTrue(ETags.matches(" * ", "abc"));
+        assertFalse(ETags.matches("*", null));
+    }
+
+    @Test
+    void matchesAnyTagInAList() {
+        assertTrue(ETags.matches("\"abc\"", "abc"));
+        assertTrue(ETags.matches("\"old\", \"abc\"", "abc"));
+        assertTrue(ETags.matches("\"old\",\"abc\" , \"older\"", "abc"));
+        assertFalse(ETags.matches("\"old\", \"older\"", "abc"));
+        assertFalse(ETags.matches("\"abc\"", null));
+    }
+
+    @Test
+    void neverMatchesWeakOrUnquotedTags() {
+        assertFalse(ETags.matches("W/\"abc\"", "abc"));
+        assertFalse(ETags.matches("abc", "abc"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.broadside.email.batchrun_edit_config.model.HtmlFinding;
+
+/**
+ * Findings of the template structure check, and that feeding the same
+ * template as a String or as UTF-8 bytes in arbitrary chunks gives the same
+ * ones.
+ */
+class HtmlStructureValidatorTest {
+
+    private static final String[] FRAGMENTS = {
+            "<html>", "</html>", "<body>", "</body>", "<div class=\"a\">", "</div>", "<p>", "</p>", "<br>", "<br/>",
+            "<img src=x.png />", "<a href=https://example.com/>", "<a href='x'>", "</a>", "<table><tr><td>",
+            "</table>", "<ul><li>", "</ul>", "<!-- c -->", "<!-- <div> -->", "<!--", "-->", "<!DOCTYPE html>",
+            "<script>if (a < b) {}</script>", "<style>p > a {}</style>", "<script>", "</script>", "<span>",
+            "</span>", "</em>", "text", "café ", "日本", "😀", "\n", "\r\n", "\r", " ", "<",
+            ">", "/", "=", "\"", "'", "< b", "<?xml?>", "</>"
+    };
+
+    @Test
+    void acceptsWellFormedTemplate() {
+        assertEquals(List.of(), findings("""
+                <!DOCTYPE html>
+                <html>
+                <head><meta charset="utf-8"><title>a < b</title></head>
+                <body>
+                  <div class='x' data-x=1><br/><img src="a.png"></div>
+                </body>
+                </html>
+                """));
+    }
+
+    @Test
+    void slashInUnquotedValueDoesNotCloseTheTag() {
+        assertEquals(List.of(), findings("<html><body><a href=https://example.com/>x</a></body></html>"));
+        assertEquals(List.of(), findings("<html><body><a href=/x/ title=t>x</a><div/></body></html>"));
+        assertEquals(List.of(), findings("<html><body><img src=a.png/></body></html>"));
+    }
+
+    @Test
+    void ignoresMarkupInsideComments() {
+        assertEquals(List.of(), findings("<html><body><!-- <div> </span> -- --></body></html>"));
+        assertEquals(List.of("UNCLOSED_COMMENT@1:13"), findings("<html><body><!-- <div></body></html>"));
+    }
+
+    @Test
+    void ignoresMarkupInsideRawText() {
+        assertEquals(List.of(), findings(
+                "<html><body><script>if (a < b && c > d) { s = \"</div>\"; }</SCRIPT>"
+                        + "<style>p > a { }</style><textarea><b></textarea></body></html>"));
+        assertEquals(List.of("UNCLOSED_TAG@1:13"), findings("<html><body><script>var x = '</div>';"));
+    }
+
+    @Test
+    void closesOptionalEndTagsSilently() {
+        assertEquals(List.of(), findings(
+                "<html><body><ul><li>a<li>b</ul><table><tr><td>x<td>y</table><p>one<p>two</body></html>"));
+        assertEquals(List.of(), findings("<html><body><p>no end tags"));
+    }
+
+    @Test
+    void reportsUnclosedAndUnexpectedTags() {
+        assertEquals(List.of("UNCLOSED_TAG@1:18"), findings("<html><body><div><span></div></body></html>"));
+        assertEquals(List.of("UNEXPECTED_END_TAG@1:13"), findings("<html><body></em></body></html>"));
+        assertEquals(List.of("UNTERMINATED_TAG@1:13"), findings("<html><body><a href=\"x"));
+        assertEquals(List.of("MISSING_HTML@1:1", "MISSING_BODY@1:1"), findings("<div></div>"));
+    }
+
+    @Test
+    void countsLinesForEveryLineBreakStyle() {
+        for (String lineBreak : new String[] { "\n", "\r\n", "\r" }) {
+            String html = String.join(lineBreak, "<html>", "<body>", "  </span>", "</body></html>");
+            assertEquals(List.of("UNEXPECTED_END_TAG@3:3"), findings(html), lineBreak.replace("\r", "CR"));
+        }
+        assertEquals(List.of("UNEXPECTED_END_TAG@3:1"), findings("<html><body>\r\n\n</span></body></html>"));
+    }
+
+    @Test
+    void countsColumnsInCharacters() {
+        String html = "<html><body>café 日😀</span></body></html>";
+        assertEquals(List.of("UNEXPECTED_END_TAG@1:20"), findings(html));
+        assertEquals(List.of("UNEXPECTED_END_TAG@1:20"), findingsFromBytes(html, 1));
+    }
+
+    @Test
+    void bytesInAnyChunksMatchString() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder html = new StringBuilder();
+            int fragments = random.nextInt(40);
+            for (int j = 0; j < fragments; j++) {
+                html.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            String template = html.toString();
+            List<String> expected = findings(template);
+            assertEquals(expected, findingsFromBytes(template, 1 + random.nextInt(7)), template);
+            assertEquals(expected, findingsFromBytes(template, 8192), template);
+        }
+    }
+
+    private static List<String> findings(String html) {
+        return describe(HtmlStructureValidator.validate(html));
+    }
+
+    private static List<String> findingsFromBytes(String html, int chunkSize) {
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+        HtmlStructureValidator validator = new HtmlStructureValidator();
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            validator.update(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+        }
+        return describe(validator.finish());
+    }
+
+    private static List<String> describe(List<HtmlFinding> findings) {
+        return findings.stream()
+                .map(finding -> finding.getCode() + "@" + finding.getLine() + ":" + finding.getColumn())
+                .toList();
+    }
+}
@@ -0,0 +1,143 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.broadside.email.batchrun_edit_config.model.JobQEvent;
+
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Append, rotation, replay and partial-failure handling of the jobq spool.
+ */
+class JobQSpoolTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysEverythingInAppendOrder() throws IOException {
+        JobQSpool spool = new JobQSpool(dir, mapper);
+        assertFalse(spool.hasPending());
+
+        spool.append(events(0, 5));
+        spool.append(events(5, 7));
+        assertTrue(spool.hasPending());
+
+        List<String> written = new ArrayList<>();
+        assertTrue(spool.drain(3, chunk -> chunk.forEach(event -> written.add(event.getUuid()))));
+
+        assertEquals(uuids(0, 7), written);
+        assertFalse(spool.hasPending());
+        assertEquals(List.of(), spoolFiles());
+    }
+
+    @Test
+    void appendsDuringReplayGoToTheNextDrain() throws IOException {
+        JobQSpool spool = new JobQSpool(dir, mapper);
+        spool.append(events(0, 2));
+
+        List<String> written = new ArrayList<>();
+        assertTrue(spool.drain(10, chunk -> {
+            chunk.forEach(event -> written.add(event.getUuid()));
+            spool.append(events(2, 3));
+        }));
+        assertEquals(uuids(0, 2), written);
+        assertTrue(spool.hasPending());
+
+        written.clear();
+        assertTrue(spool.drain(10, chunk -> chunk.forEach(event -> written.add(event.getUuid()))));
+        assertEquals(uuids(2, 3), written);
+        assertFalse(spool.hasPending());
+    }
+
+    @Test
+    void keepsOnlyTheUnwrittenRemainderAfterAFailure() throws IOException {
+        JobQSpool spool = new JobQSpool(dir, mapper);
+        spool.append(events(0, 10));
+
+        // First chunk written, second fails after writing one event, rest untouched
+        int[] calls = { 0 };
+        assertFalse(spool.drain(4, chunk -> {
+            if (calls[0]++ == 1) {
+                chunk.remove(0);
+                throw new IllegalStateException("database went away");
+            }
+        }));
+        assertTrue(spool.hasPending());
+
+        List<String> written = new ArrayList<>();
+        assertTrue(spool.drain(4, chunk -> chunk.forEach(event -> written.add(event.getUuid()))));
+        assertEquals(uuids(5, 10), written);
+    }
+
+    @Test
+    void findsPendingEventsLeftByAnEarlierRun() throws IOException {
+        new JobQSpool(dir, mapper).append(events(0, 3));
+
+        JobQSpool restarted = new JobQSpool(dir, mapper);
+        assertTrue(restarted.hasPending());
+
+        List<String> written = new ArrayList<>();
+        assertTrue(restarted.drain(10, chunk -> chunk.forEach(event -> written.add(event.getUuid()))));
+        assertEquals(uuids(0, 3), written);
+    }
+
+    @Test
+    void skipsUnreadableLines() throws IOException {
+        JobQSpool spool = new JobQSpool(dir, mapper);
+        spool.append(events(0, 1));
+        Files.writeString(dir.resolve("jobq.spool"), "{not json\n\n", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        spool.append(events(1, 2));
+
+        List<String> written = new ArrayList<>();
+        assertTrue(spool.drain(10, chunk -> chunk.forEach(event -> written.add(event.getUuid()))));
+        assertEquals(uuids(0, 2), written);
+    }
+
+    @Test
+    void deadLettersAreNeverReplayed() throws IOException {
+        JobQSpool spool = new JobQSpool(dir, mapper);
+        spool.deadLetter(events(0, 2));
+        assertFalse(spool.hasPending());
+
+        List<String> written = new ArrayList<>();
+        assertTrue(spool.drain(10, chunk -> chunk.forEach(event -> written.add(event.getUuid()))));
+        assertEquals(List.of(), written);
+        assertEquals(2, Files.readAllLines(dir.resolve("jobq.dead")).size());
+    }
+
+    private static List<JobQEvent> events(int from, int to) {
+        List<JobQEvent> events = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            events.add(JobQEvent.start("job-" + i, "CONFIG", "GET", "c" + i, null));
+        }
+        return events;
+    }
+
+    private static List<String> uuids(int from, int to) {
+        return events(from, to).stream().map(JobQEvent::getUuid).toList();
+    }
+
+    private List<String> spoolFiles() throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.map(path -> path.getFileName().toString()).toList();
+        }
+    }
+}
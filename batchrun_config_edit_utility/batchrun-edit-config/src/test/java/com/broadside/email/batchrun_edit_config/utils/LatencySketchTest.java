@@ -0,0 +1,100 @@
+package com.broadside.email.batchrun_edit_config.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Quantile accuracy of the latency sketch, and that merging sketches or
+ * round-tripping them through bytes gives the same answers as one sketch fed
+ * every value.
+ */
+class LatencySketchTest {
+
+    private static final double[] QUANTILES = { 0, 0.01, 0.25, 0.5, 0.9, 0.95, 0.99, 1 };
+
+    @Test
+    void emptySketchHasNoQuantiles() {
+        LatencySketch sketch = new LatencySketch();
+        assertEquals(0, sketch.getCount());
+        assertNull(sketch.quantile(0.5));
+        assertNull(LatencySketch.fromBytes(sketch.toBytes()).quantile(0.5));
+        assertNull(LatencySketch.fromBytes(null).quantile(0.5));
+    }
+
+    @Test
+    void quantilesAreWithinOnePercent() {
+        Random random = new Random(7);
+        double[] values = new double[10_000];
+        LatencySketch sketch = new LatencySketch();
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform from 0.01 ms to 100 s
+            values[i] = Math.pow(10, -2 + random.nextDouble() * 7);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : QUANTILES) {
+            double exact = values[(int) Math.floor(q * (values.length - 1))];
+            assertEquals(exact, sketch.quantile(q), exact * 0.01, "q=" + q);
+        }
+    }
+
+    @Test
+    void countsSubMicrosecondValuesAsZero() {
+        LatencySketch sketch = new LatencySketch();
+        sketch.add(0);
+        sketch.add(0.0001);
+        sketch.add(5);
+        assertEquals(3, sketch.getCount());
+        assertEquals(0.0, sketch.quantile(0.5));
+        assertEquals(5, sketch.quantile(1), 0.05);
+    }
+
+    @Test
+    void mergedSketchesMatchOneSketchOfEveryValue() {
+        Random random = new Random(11);
+        LatencySketch all = new LatencySketch();
+        LatencySketch merged = new LatencySketch();
+        for (int part = 0; part < 5; part++) {
+            LatencySketch minute = new LatencySketch();
+            for (int i = 0; i < 1000; i++) {
+                double ms = part == 0 && i % 10 == 0 ? 0 : random.nextDouble() * (part + 1) * 200;
+                all.add(ms);
+                minute.add(ms);
+            }
+            merged.merge(LatencySketch.fromBytes(minute.toBytes()));
+        }
+
+        assertEquals(all.getCount(), merged.getCount());
+        for (double q : QUANTILES) {
+            assertEquals(all.quantile(q), merged.quantile(q), "q=" + q);
+        }
+    }
+
+    @Test
+    void roundTripsThroughBytes() {
+        LatencySketch sketch = new LatencySketch();
+        for (double ms : new double[] { 0, 0.5, 1, 12.5, 12.6, 480, 90_000 }) {
+            sketch.add(ms);
+        }
+        LatencySketch copy = LatencySketch.fromBytes(sketch.toBytes());
+
+        assertEquals(sketch.getCount(), copy.getCount());
+        for (double q : QUANTILES) {
+            assertEquals(sketch.quantile(q), copy.quantile(q), "q=" + q);
+        }
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        byte[] bytes = new LatencySketch().toBytes();
+        bytes[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> LatencySketch.fromBytes(bytes));
+    }
+}